@@ -107,6 +107,26 @@ public class Axis {
         init();
     }
 
+    /**
+     * Copy constructor on a copy of its base, e.g. in a snapshot of the
+     * canvas. The grid lines and labels are shared.
+     */
+    Axis(Axis axis, Base base) {
+        this.base = base;
+        this.index = axis.index;
+        this.ticks = axis.ticks;
+        this.location = axis.location;
+        this.isTickVisible = axis.isTickVisible;
+        this.isGridVisible = axis.isGridVisible;
+        this.isFrameVisible = axis.isFrameVisible;
+        this.rotation = axis.rotation;
+        this.slices = axis.slices;
+        this.axisLabel = axis.axisLabel;
+        this.gridLines = axis.gridLines;
+        this.gridLabels = axis.gridLabels;
+        initOrigin();
+    }
+
     /**
      * Sets the axis to its default initial value.
      */
@@ -434,24 +454,24 @@ public class Axis {
 
                         if (base.getDimension() == 2 && index == 0 && rotation != 0.0) {
                             if ((prevx == x && prevy == y)
-                                    || Math.abs(x - prevx) > gridLabels[i].font.getSize()) {
+                                    || Math.abs(x - prevx) > gridLabels[i].fontSize) {
                                 gridLabels[i].paint(g);
                                 prevx = x;
                                 prevy = y;
                             }
                         } else if (base.getDimension() == 2 && index == 1) {
                             if ((prevx == x && prevy == y && i == 0)
-                                    || Math.abs(prevy - y) > gridLabels[i].font.getSize()) {
+                                    || Math.abs(prevy - y) > gridLabels[i].fontSize) {
                                 gridLabels[i].paint(g);
                                 prevx = x;
                                 prevy = y;
                             }
                         } else {
-                            double sWidth = g.getStringWidth(gridLabels[i].text, gridLabels[i].font);
+                            double sWidth = gridLabels[i].width(g);
 
                             if ((prevx == x && prevy == y)
                                     || Math.abs(x - prevx) > sWidth
-                                    || Math.abs(prevy - y) > gridLabels[i].font.getSize()) {
+                                    || Math.abs(prevy - y) > gridLabels[i].fontSize) {
                                 gridLabels[i].paint(g);
                                 prevx = x;
                                 prevy = y;
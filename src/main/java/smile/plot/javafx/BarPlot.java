@@ -60,7 +60,12 @@ public class BarPlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
+    protected double[][] computeBounds() {
+        return new double[][]{lowerBound(), upperBound()};
+    }
+
+    /** Returns the lower bound of data. */
+    private double[] lowerBound() {
         double[] bound = MathEx.colMin(bars[0].data);
         bound[0] -= bars[0].width / 2;
 
@@ -78,8 +83,8 @@ public class BarPlot extends Plot {
         return bound;
     }
 
-    @Override
-    public double[] getUpperBound() {
+    /** Returns the upper bound of data. */
+    private double[] upperBound() {
         double[] bound = MathEx.colMax(bars[0].data);
         bound[0] += bars[0].width / 2;
 
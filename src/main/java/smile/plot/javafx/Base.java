@@ -113,6 +113,25 @@ public class Base {
         reset();
     }
 
+    /**
+     * Copy constructor, e.g. to render a snapshot of the canvas on a worker
+     * thread while the base is modified.
+     */
+    Base(Base base) {
+        this.dimension = base.dimension;
+        this.baseCoords = new double[base.baseCoords.length][];
+        for (int i = 0; i < baseCoords.length; i++) {
+            baseCoords[i] = base.baseCoords[i].clone();
+        }
+        this.lowerBound = base.lowerBound.clone();
+        this.upperBound = base.upperBound.clone();
+        this.precisionUnit = base.precisionUnit.clone();
+        this.precisionDigits = base.precisionDigits.clone();
+        this.originalLowerBound = base.originalLowerBound.clone();
+        this.originalUpperBound = base.originalUpperBound.clone();
+        this.extendBound = base.extendBound.clone();
+    }
+
     /**
      * Reset base coordinates. Round/extend lower and upper bounds if necessary.
      */
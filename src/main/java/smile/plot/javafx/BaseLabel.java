@@ -18,7 +18,6 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
 /**
  * This is specialized label for axis labels. Coordinates used here are are
  * proportional to the base coordinates.
@@ -29,26 +28,24 @@ class BaseLabel extends Label {
     /**
      * The font for axis label.
      */
-    private static final Font Arial = new Font("Arial", 14);
+    private static final String Arial = "Arial";
 
     /**
      * Constructor.
      */
     public BaseLabel(String text, double[] coordinates, double horizontalReference, double verticalReference, double rotation) {
-        super(text, coordinates, horizontalReference, verticalReference, rotation, Arial, Color.BLACK);
+        super(text, coordinates, horizontalReference, verticalReference, rotation, Arial, 14, Color.BLACK);
     }
 
     @Override
     public void paint(Graphics g) {
-        Font f = g.getFont();
-        g.setFont(font);
-
-        Color c = g.getColor();
+        GraphicsContextInterface g2d = g.getGraphics();
+        g2d.save();
+        setFont(g);
         g.setColor(color);
 
         g.drawTextBaseRatio(text, coordinates, horizontalReference, verticalReference, rotation);
 
-        g.setColor(c);
-        g.setFont(f);
+        g2d.restore();
     }
 }
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The bounding box of plot data. The lower and upper bounds are found in
+ * a single pass over the data, which is split into chunks scanned in
+ * parallel for large data. NaN values are ignored. The bounds are returned
+ * as a two-row array {lower, upper}, which the plots cache since their
+ * data are not modified after construction.
+ *
+ * @author Haifeng Li
+ */
+class Bounds {
+
+    /**
+     * The number of rows scanned by a task.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Scans a range of rows into the bounds.
+     */
+    private interface Scan {
+        void accept(double[][] bounds, int from, int to);
+    }
+
+    /**
+     * Returns empty bounds of given dimension.
+     */
+    static double[][] empty(int dimension) {
+        double[][] bounds = new double[2][dimension];
+        Arrays.fill(bounds[0], Double.POSITIVE_INFINITY);
+        Arrays.fill(bounds[1], Double.NEGATIVE_INFINITY);
+        return bounds;
+    }
+
+    /**
+     * Extends the bounds to a point.
+     */
+    static void extend(double[][] bounds, double[] x) {
+        double[] lower = bounds[0];
+        double[] upper = bounds[1];
+        for (int j = 0; j < lower.length; j++) {
+            double v = x[j];
+            if (v < lower[j]) lower[j] = v;
+            if (v > upper[j]) upper[j] = v;
+        }
+    }
+
+    /**
+     * Extends the first bounds to the second ones.
+     * @return the first bounds.
+     */
+    static double[][] merge(double[][] a, double[][] b) {
+        for (int j = 0; j < a[0].length; j++) {
+            if (b[0][j] < a[0][j]) a[0][j] = b[0][j];
+            if (b[1][j] > a[1][j]) a[1][j] = b[1][j];
+        }
+        return a;
+    }
+
+    /**
+     * Returns the bounds of the columns of a matrix.
+     */
+    static double[][] of(double[][] data) {
+        return scan(data.length, data[0].length, (bounds, from, to) -> {
+            for (int i = from; i < to; i++) {
+                extend(bounds, data[i]);
+            }
+        });
+    }
+
+    /**
+     * Returns the bounds of the points of a m x n grid.
+     */
+    static double[][] of(double[][][] data) {
+        return scan(data.length, data[0][0].length, (bounds, from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (double[] x : data[i]) {
+                    extend(bounds, x);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the bounds of the columns.
+     */
+    static double[][] of(DoubleColumns data) {
+        int d = data.ncols();
+        return scan(data.size(), d, (bounds, from, to) -> {
+            double[] block = new double[Math.min(4096, to - from)];
+            for (int offset = from; offset < to; offset += block.length) {
+                int n = Math.min(block.length, to - offset);
+                for (int j = 0; j < d; j++) {
+                    data.get(j, offset, n, block);
+                    double lower = bounds[0][j];
+                    double upper = bounds[1][j];
+                    for (int i = 0; i < n; i++) {
+                        double v = block[i];
+                        if (v < lower) lower = v;
+                        if (v > upper) upper = v;
+                    }
+                    bounds[0][j] = lower;
+                    bounds[1][j] = upper;
+                }
+            }
+        });
+    }
+
+    /**
+     * Scans the rows, in parallel chunks if there are many.
+     */
+    private static double[][] scan(int size, int dimension, Scan scan) {
+        if (size <= CHUNK_SIZE) {
+            double[][] bounds = empty(dimension);
+            scan.accept(bounds, 0, size);
+            return bounds;
+        }
+
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> {
+                    double[][] bounds = empty(dimension);
+                    scan.accept(bounds, k * CHUNK_SIZE, Math.min(size, (k + 1) * CHUNK_SIZE));
+                    return bounds;
+                })
+                .reduce(Bounds::merge)
+                .get();
+    }
+}
@@ -118,15 +118,8 @@ public class BoxPlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = {0, MathEx.min(data)};
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = {data.length, MathEx.max(data)};
-        return bound;
+    protected double[][] computeBounds() {
+        return new double[][]{{0, MathEx.min(data)}, {data.length, MathEx.max(data)}};
     }
 
     @Override
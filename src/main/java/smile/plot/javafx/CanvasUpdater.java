@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Updates the canvases of live data at most once per JavaFX pulse.
+ * Producer threads only raise a flag on change, and a pulse timer applies
+ * the update to each attached canvas on the JavaFX thread, where property
+ * changes fire the repaint. So a fast producer doesn't flood the JavaFX
+ * thread. Without the JavaFX toolkit, e.g. in batch export, there is no
+ * timer and the canvases are not updated. The canvases are held weakly so
+ * that a discarded canvas is not kept alive by the timer, which stops when
+ * all canvases are detached or collected.
+ *
+ * @author Haifeng Li
+ */
+class CanvasUpdater {
+
+    /**
+     * The weak references to attached canvases.
+     */
+    private final List<WeakReference<SmileFxCanvas>> canvases = new CopyOnWriteArrayList<>();
+    /**
+     * True if the data changed since the last pulse.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    /**
+     * The update of a canvas on the JavaFX thread.
+     */
+    private final Consumer<SmileFxCanvas> update;
+    /**
+     * The pulse timer, only accessed on the JavaFX thread.
+     */
+    private AnimationTimer timer;
+
+    /**
+     * Constructor.
+     * @param update the update of a canvas on the JavaFX thread.
+     */
+    CanvasUpdater(Consumer<SmileFxCanvas> update) {
+        this.update = update;
+    }
+
+    /**
+     * Requests the canvases to be updated on next pulse. Thread safe.
+     */
+    void request() {
+        dirty.set(true);
+    }
+
+    /**
+     * Attaches a canvas and starts the pulse timer.
+     */
+    void attach(SmileFxCanvas canvas) {
+        canvases.removeIf(ref -> ref.get() == null);
+        canvases.add(new WeakReference<>(canvas));
+        runLater(() -> {
+            if (timer == null) {
+                timer = new AnimationTimer() {
+                    @Override
+                    public void handle(long now) {
+                        pulse();
+                    }
+                };
+            }
+            timer.start();
+        });
+    }
+
+    /**
+     * Detaches a canvas. The pulse timer is stopped when no canvas
+     * is attached.
+     */
+    void detach(SmileFxCanvas canvas) {
+        canvases.removeIf(ref -> ref.get() == canvas);
+        runLater(() -> {
+            if (timer != null && canvases.isEmpty()) {
+                timer.stop();
+            }
+        });
+    }
+
+    /**
+     * Updates the live canvases if the data changed, drops the collected
+     * ones and stops the timer when none is left. On the JavaFX thread.
+     */
+    private void pulse() {
+        boolean changed = dirty.getAndSet(false);
+        for (WeakReference<SmileFxCanvas> ref : canvases) {
+            SmileFxCanvas canvas = ref.get();
+            if (canvas == null) {
+                canvases.remove(ref);
+            } else if (changed) {
+                update.accept(canvas);
+            }
+        }
+
+        if (canvases.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Runs a task on the JavaFX thread if the toolkit is running.
+     */
+    private static void runLater(Runnable task) {
+        try {
+            Platform.runLater(task);
+        } catch (IllegalStateException ex) {
+            // The toolkit is not initialized. Nothing to update.
+        }
+    }
+}
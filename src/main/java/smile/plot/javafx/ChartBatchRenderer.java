@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders many plots to off-screen images concurrently, e.g. to export
+ * the charts of batch reports. Each job is rendered with a software
+ * rasterizer on a pool of worker threads without the JavaFX toolkit.
+ * Every worker reuses its raster buffer across jobs of the same size and
+ * every render gets its own Graphics, projection and scratch buffers, so
+ * that the workers share no mutable state. The same canvas may be
+ * rendered by several workers at once.
+ * <p>
+ * The number of jobs waiting or in progress is bounded. When the bound is
+ * reached, submit blocks until a job finishes, which keeps the producer
+ * from building plots faster than they are rendered.
+ *
+ * @author Haifeng Li
+ */
+public class ChartBatchRenderer implements AutoCloseable {
+
+    /**
+     * The consumer of rendered images.
+     */
+    public interface Sink {
+        /**
+         * Consumes a rendered image on the worker thread. The image is
+         * reused by the worker for later jobs, so it should be encoded
+         * or copied before returning.
+         * @param image the rendered image.
+         */
+        void accept(BufferedImage image) throws IOException;
+    }
+
+    /**
+     * The worker pool.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * The permits of jobs waiting or in progress.
+     */
+    private final Semaphore permits;
+    /**
+     * The raster buffer of each worker thread.
+     */
+    private final ThreadLocal<RasterGraphicsContext> rasters = new ThreadLocal<>();
+    /**
+     * The raster buffers of all workers, which are disposed on close.
+     */
+    private final List<RasterGraphicsContext> allRasters = new ArrayList<>();
+
+    /**
+     * Constructor with a worker per core and a queue of four jobs
+     * per worker.
+     */
+    public ChartBatchRenderer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor with a queue of four jobs per worker.
+     * @param threads the number of worker threads.
+     */
+    public ChartBatchRenderer(int threads) {
+        this(threads, 4 * threads);
+    }
+
+    /**
+     * Constructor.
+     * @param threads the number of worker threads.
+     * @param capacity the maximum number of jobs waiting to be rendered.
+     */
+    public ChartBatchRenderer(int threads, int capacity) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+
+        permits = new Semaphore(threads + capacity);
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "smile-plot-batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Submits a job, blocking while the queue is full.
+     * @param canvas the plot to render.
+     * @param width the width of image.
+     * @param height the height of image.
+     * @param sink the consumer of image.
+     * @return the future of job, which fails with the exception of
+     *         rendering or sink.
+     */
+    public Future<Void> submit(SmileFxCanvas canvas, int width, int height, Sink sink) throws InterruptedException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid image size: %d x %d", width, height));
+        }
+
+        permits.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    RasterGraphicsContext raster = raster(width, height);
+                    canvas.render(raster);
+                    sink.accept(raster.getImage());
+                    return null;
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the cleared raster buffer of current worker thread.
+     */
+    private RasterGraphicsContext raster(int width, int height) {
+        RasterGraphicsContext raster = rasters.get();
+        if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            RasterGraphicsContext old = raster;
+            raster = new RasterGraphicsContext(width, height);
+            rasters.set(raster);
+            synchronized (allRasters) {
+                if (old != null) {
+                    allRasters.remove(old);
+                    old.dispose();
+                }
+                allRasters.add(raster);
+            }
+        } else {
+            raster.reset();
+        }
+        return raster;
+    }
+
+    /**
+     * Returns a sink that writes the image as PNG to a stream, which
+     * is closed afterwards.
+     * @param out the output stream.
+     */
+    public static Sink png(OutputStream out) {
+        return image -> {
+            try (OutputStream stream = out) {
+                ImageIO.write(image, "png", stream);
+            }
+        };
+    }
+
+    /**
+     * Finishes the submitted jobs, stops the workers and releases their
+     * raster buffers. If the calling thread is interrupted while waiting,
+     * the jobs not yet started are cancelled, the running ones are
+     * interrupted, the interrupt status is restored and the buffers are
+     * left to the garbage collector.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        synchronized (allRasters) {
+            for (RasterGraphicsContext raster : allRasters) {
+                raster.dispose();
+            }
+            allRasters.clear();
+        }
+    }
+}
@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import smile.math.matrix.SparseMatrix;
+
+/**
+ * The range of values mapped to a color palette. In case of outliers,
+ * heat maps use the 1% and 99% quantiles as the lower and upper limits
+ * instead of min and max. The quantiles are found without copying or
+ * sorting the data. The values are counted into a histogram of fine bins
+ * in parallel, which yields the bin of each quantile. The bin is refined
+ * with further histogram passes over the range of its values until it
+ * holds few values or a single distinct one, which takes one or two
+ * passes in practice. Then the exact quantile is selected from
+ * the values of bin, and the approximate quantile is interpolated in the
+ * bin without the last pass. The histograms of chunks are merged, so the
+ * same works for sparse inputs scanned by columns. NaN values are ignored.
+ * The histograms span the finite values only, while infinities are ranked
+ * below or above them.
+ *
+ * @author Haifeng Li
+ */
+public class ColorRange {
+
+    /**
+     * The methods to find the quantiles.
+     */
+    public enum Method {
+        /** The exact order statistics. */
+        EXACT,
+        /** The quantiles interpolated in histogram bins. One pass less. */
+        APPROXIMATE
+    }
+
+    /**
+     * The default quantile of lower limit.
+     */
+    public static final double LOWER = 0.01;
+    /**
+     * The default quantile of upper limit.
+     */
+    public static final double UPPER = 0.99;
+    /**
+     * The number of histogram bins.
+     */
+    private static final int BINS = 4096;
+    /**
+     * The maximum number of values in a bin to be collected and sorted.
+     */
+    private static final int COLLECT = 65536;
+
+    /**
+     * The lower limit.
+     */
+    private final double lower;
+    /**
+     * The upper limit.
+     */
+    private final double upper;
+    /**
+     * The number of valid values.
+     */
+    private final long size;
+
+    /**
+     * Constructor.
+     * @param lower the lower limit.
+     * @param upper the upper limit.
+     * @param size the number of valid values.
+     */
+    private ColorRange(double lower, double upper, long size) {
+        this.lower = lower;
+        this.upper = upper;
+        this.size = size;
+    }
+
+    /**
+     * Returns the lower limit, or NaN if there are no valid values.
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * Returns the upper limit, or NaN if there are no valid values.
+     */
+    public double getUpper() {
+        return upper;
+    }
+
+    /**
+     * Returns the number of valid, i.e. not NaN, values.
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColorRange[%s, %s]", lower, upper);
+    }
+
+    /**
+     * A data source that is scanned in parallel by ranges of an index,
+     * e.g. matrix rows or sparse matrix columns.
+     */
+    interface Source {
+        /** Returns the size of index space. */
+        int size();
+        /** Feeds the values in the index range [from, to). */
+        void scan(int from, int to, DoubleConsumer consumer);
+    }
+
+    /**
+     * Returns the range of 1% and 99% quantiles of a matrix.
+     */
+    public static ColorRange of(double[][] z, Method method) {
+        return of(z, LOWER, UPPER, method);
+    }
+
+    /**
+     * Returns the range of given quantiles of a matrix.
+     * @param z the data matrix.
+     * @param lower the quantile of lower limit.
+     * @param upper the quantile of upper limit.
+     * @param method the method to find the quantiles.
+     */
+    public static ColorRange of(double[][] z, double lower, double upper, Method method) {
+        return of(new Source() {
+            @Override
+            public int size() {
+                return z.length;
+            }
+
+            @Override
+            public void scan(int from, int to, DoubleConsumer consumer) {
+                for (int i = from; i < to; i++) {
+                    for (double v : z[i]) {
+                        consumer.accept(v);
+                    }
+                }
+            }
+        }, lower, upper, method);
+    }
+
+    /**
+     * Returns the range of 1% and 99% quantiles of columnar data.
+     */
+    public static ColorRange of(DoubleColumns data, Method method) {
+        return of(data, LOWER, UPPER, method);
+    }
+
+    /**
+     * Returns the range of given quantiles of columnar data.
+     * @param data the data columns.
+     * @param lower the quantile of lower limit.
+     * @param upper the quantile of upper limit.
+     * @param method the method to find the quantiles.
+     */
+    public static ColorRange of(DoubleColumns data, double lower, double upper, Method method) {
+        int block = 4096;
+        int blocks = (data.size() + block - 1) / block;
+        return of(new Source() {
+            @Override
+            public int size() {
+                return blocks;
+            }
+
+            @Override
+            public void scan(int from, int to, DoubleConsumer consumer) {
+                double[] buffer = new double[block];
+                for (int b = from; b < to; b++) {
+                    int offset = b * block;
+                    int n = Math.min(block, data.size() - offset);
+                    for (int j = 0; j < data.ncols(); j++) {
+                        data.get(j, offset, n, buffer);
+                        for (int i = 0; i < n; i++) {
+                            consumer.accept(buffer[i]);
+                        }
+                    }
+                }
+            }
+        }, lower, upper, method);
+    }
+
+    /**
+     * Returns the range of 1% and 99% quantiles of the non-zero entries
+     * of a sparse matrix.
+     */
+    public static ColorRange of(SparseMatrix sparse, Method method) {
+        return of(sparse, LOWER, UPPER, method);
+    }
+
+    /**
+     * Returns the range of given quantiles of the non-zero entries of
+     * a sparse matrix. The columns are scanned in parallel.
+     * @param sparse the sparse matrix.
+     * @param lower the quantile of lower limit.
+     * @param upper the quantile of upper limit.
+     * @param method the method to find the quantiles.
+     */
+    public static ColorRange of(SparseMatrix sparse, double lower, double upper, Method method) {
+        return of(new Source() {
+            @Override
+            public int size() {
+                return sparse.ncols();
+            }
+
+            @Override
+            public void scan(int from, int to, DoubleConsumer consumer) {
+                sparse.forEachNonZero(from, to, (i, j, x) -> consumer.accept(x));
+            }
+        }, lower, upper, method);
+    }
+
+    /**
+     * Returns the range of given quantiles of a data source.
+     */
+    static ColorRange of(Source source, double lower, double upper, Method method) {
+        if (lower < 0 || lower > upper || upper > 1) {
+            throw new IllegalArgumentException(String.format("Invalid quantiles: %f, %f", lower, upper));
+        }
+
+        // The count of valid values, the min and max of finite values,
+        // and the counts of negative and positive infinities.
+        double[] stats = reduce(source, () -> new double[]{0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0, 0},
+                (s, v) -> {
+                    if (Double.isFinite(v)) {
+                        s[0]++;
+                        if (v < s[1]) s[1] = v;
+                        if (v > s[2]) s[2] = v;
+                    } else if (v == Double.NEGATIVE_INFINITY) {
+                        s[0]++;
+                        s[3]++;
+                    } else if (v == Double.POSITIVE_INFINITY) {
+                        s[0]++;
+                        s[4]++;
+                    }
+                }, (a, b) -> {
+                    a[0] += b[0];
+                    a[1] = Math.min(a[1], b[1]);
+                    a[2] = Math.max(a[2], b[2]);
+                    a[3] += b[3];
+                    a[4] += b[4];
+                });
+
+        long n = (long) stats[0];
+        if (n == 0) {
+            return new ColorRange(Double.NaN, Double.NaN, 0);
+        }
+
+        // Same ranks as the sorted values indexed in the past.
+        long lowerRank = Math.min(n - 1, Math.round(lower * n));
+        long upperRank = Math.round(upper * (n - 1));
+
+        // The infinities rank below and above the finite values, which
+        // alone span the histogram so that its bins stay finite.
+        long negative = (long) stats[3];
+        long finite = n - negative - (long) stats[4];
+        Level root = finite > 0 ? new Level(stats[1], stats[2]) : null;
+        Histogram histogram = root != null ? root.histogram(source) : null;
+        double lo = select(source, histogram, lowerRank - negative, finite, method);
+        double hi = select(source, histogram, upperRank - negative, finite, method);
+        return new ColorRange(lo, hi, n);
+    }
+
+    /**
+     * A histogram level over the closed value range [lo, hi]. The range of
+     * a child level is that of the values in a bin of its parent, so that
+     * the levels shrink to the data even with many ties.
+     */
+    private static class Level {
+        /** The lower end of range. */
+        final double lo;
+        /** The upper end of range. */
+        final double hi;
+        /**
+         * The bins per unit of value. The halves of values are binned so
+         * that the width of range doesn't overflow.
+         */
+        final double scale;
+
+        Level(double lo, double hi) {
+            this.lo = lo;
+            this.hi = hi;
+            this.scale = hi > lo ? BINS / (hi * 0.5 - lo * 0.5) : 0.0;
+        }
+
+        /** Returns the bin of a value. */
+        int bin(double v) {
+            int b = (int) ((v * 0.5 - lo * 0.5) * scale);
+            return b < 0 ? 0 : Math.min(b, BINS - 1);
+        }
+
+        /** Returns true if a value is in the range of level. */
+        boolean contains(double v) {
+            return v >= lo && v <= hi;
+        }
+
+        /** Counts the values of level per bin. */
+        Histogram histogram(Source source) {
+            return reduce(source, Histogram::new,
+                    (h, v) -> {
+                        if (contains(v)) h.add(bin(v), v);
+                    }, Histogram::merge);
+        }
+    }
+
+    /**
+     * The count, min and max of values per bin.
+     */
+    private static class Histogram {
+        final long[] count = new long[BINS];
+        final double[] min = new double[BINS];
+        final double[] max = new double[BINS];
+
+        Histogram() {
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(int b, double v) {
+            count[b]++;
+            if (v < min[b]) min[b] = v;
+            if (v > max[b]) max[b] = v;
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < BINS; i++) {
+                count[i] += other.count[i];
+                min[i] = Math.min(min[i], other.min[i]);
+                max[i] = Math.max(max[i], other.max[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of given rank among the finite values, or an
+     * infinity if the rank is out of the range of finite values.
+     * @param source the data source.
+     * @param histogram the histogram of root level over finite values.
+     * @param rank the rank relative to the smallest finite value.
+     * @param finite the number of finite values.
+     * @param method the method to find the quantiles.
+     */
+    private static double select(Source source, Histogram histogram, long rank, long finite, Method method) {
+        if (rank < 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        if (rank >= finite) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        while (true) {
+            int b = 0;
+            long below = 0;
+            while (below + histogram.count[b] <= rank) {
+                below += histogram.count[b++];
+            }
+
+            long count = histogram.count[b];
+            double lo = histogram.min[b];
+            double hi = histogram.max[b];
+            rank -= below;
+            if (lo == hi) {
+                // All values of bin are equal, e.g. ties at zero.
+                return lo;
+            }
+
+            Level child = new Level(lo, hi);
+            if (count <= COLLECT) {
+                if (method == Method.APPROXIMATE) {
+                    return lo + (hi - lo) * (rank + 0.5) / count;
+                }
+
+                double[] values = collect(source, child, (int) count);
+                Arrays.sort(values);
+                return values[(int) rank];
+            }
+
+            histogram = child.histogram(source);
+        }
+    }
+
+    /**
+     * A growable buffer of values.
+     */
+    private static class Buffer {
+        double[] values = new double[16];
+        int size = 0;
+
+        void add(double v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = v;
+        }
+
+        void addAll(Buffer other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, size + other.size);
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+
+    /**
+     * Returns the values of a level.
+     */
+    private static double[] collect(Source source, Level level, int count) {
+        Buffer buffer = reduce(source, Buffer::new,
+                (b, v) -> {
+                    if (level.contains(v)) b.add(v);
+                }, Buffer::addAll);
+        return Arrays.copyOf(buffer.values, count);
+    }
+
+    /**
+     * A mutable accumulator of values.
+     */
+    private interface Accumulator<A> {
+        void accept(A acc, double v);
+    }
+
+    /**
+     * A merge of accumulators into the first one.
+     */
+    private interface Merger<A> {
+        void merge(A a, A b);
+    }
+
+    /**
+     * Scans the source in parallel chunks, each into its own accumulator,
+     * and merges the accumulators.
+     */
+    private static <A> A reduce(Source source, Supplier<A> supplier, Accumulator<A> accumulator, Merger<A> merger) {
+        int size = source.size();
+        int chunks = Math.max(1, Math.min(size, 4 * Runtime.getRuntime().availableProcessors()));
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> {
+                    A acc = supplier.get();
+                    int from = (int) ((long) size * k / chunks);
+                    int to = (int) ((long) size * (k + 1) / chunks);
+                    source.scan(from, to, v -> accumulator.accept(acc, v));
+                    return acc;
+                })
+                .reduce((a, b) -> {
+                    merger.merge(a, b);
+                    return a;
+                })
+                .get();
+    }
+}
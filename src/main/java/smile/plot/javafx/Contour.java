@@ -18,7 +18,11 @@
 package smile.plot.javafx;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 
 /**
@@ -31,6 +35,15 @@ import smile.math.MathEx;
  * @author Haifeng Li
  */
 public class Contour extends Plot {
+    /**
+     * The minimum number of cells times levels to extract in parallel.
+     */
+    private static final long PARALLEL_CELLS = 1 << 18;
+    /**
+     * The width and height of cell blocks in the interval index.
+     */
+    private static final int BLOCK = 16;
+
     /**
      * The x coordinate of surface.
      */
@@ -75,6 +88,18 @@ public class Contour extends Plot {
      * Show the level.
      */
     private boolean isLevelVisible = true;
+    /**
+     * The number of cell blocks per row in the interval index.
+     */
+    private int blockColumns;
+    /**
+     * The minimum of the grid values of each cell block.
+     */
+    private double[] blockMin;
+    /**
+     * The maximum of the grid values of each cell block.
+     */
+    private double[] blockMax;
 
     /**
      * Constructor.
@@ -151,32 +176,71 @@ public class Contour extends Plot {
     }
 
     /**
-     * A line segment in contour line.
+     * The line segments of contour lines at a level, stored in primitive
+     * buffers. The segments in a cell are linked by index from the head
+     * of cell, and the segments of a contour line are linked in order
+     * while it is followed.
      */
-    class Segment {
+    private static class Segments {
+        /** The end points (x0, y0, x1, y1) of segments. */
+        double[] xy = new double[256];
+        /** The index of next segment, or -1. */
+        int[] next = new int[64];
+        /** The number of segments. */
+        int size = 0;
+        /** The index of first segment in each cell, or -1. */
+        final int[] head;
+        /** The cells with segments. */
+        int[] cells = new int[64];
+        /** The number of cells with segments. */
+        int touched = 0;
+
+        Segments(int cells) {
+            head = new int[cells];
+            Arrays.fill(head, -1);
+        }
+
+        /**
+         * Clears the segments for next level. The heads of cells are
+         * already cleared when the segments are followed.
+         */
+        void clear() {
+            size = 0;
+            touched = 0;
+        }
+
+        /** Adds a segment to the front of a cell. */
+        void add(int cell, double x0, double y0, double x1, double y1) {
+            if (size == next.length) {
+                next = Arrays.copyOf(next, 2 * size);
+                xy = Arrays.copyOf(xy, 8 * size);
+            }
 
-        double x0;
-        double y0;
-        double x1;
-        double y1;
-        Segment next;
+            if (head[cell] < 0) {
+                if (touched == cells.length) {
+                    cells = Arrays.copyOf(cells, 2 * touched);
+                }
+                cells[touched++] = cell;
+            }
 
-        Segment(double x0, double y0, double x1, double y1, Segment next) {
-            this.x0 = x0;
-            this.y0 = y0;
-            this.x1 = x1;
-            this.y1 = y1;
-            this.next = next;
+            int k = 4 * size;
+            xy[k] = x0;
+            xy[k + 1] = y0;
+            xy[k + 2] = x1;
+            xy[k + 3] = y1;
+            next[size] = head[cell];
+            head[cell] = size++;
         }
 
-        void swap() {
-            double x, y;
-            x = x0;
-            y = y0;
-            x0 = x1;
-            y0 = y1;
-            x1 = x;
-            y1 = y;
+        /** Swaps the end points of a segment. */
+        void swap(int s) {
+            int k = 4 * s;
+            double x = xy[k];
+            double y = xy[k + 1];
+            xy[k] = xy[k + 2];
+            xy[k + 1] = xy[k + 3];
+            xy[k + 2] = x;
+            xy[k + 3] = y;
         }
     }
 
@@ -263,296 +327,390 @@ public class Contour extends Plot {
             }
         }
 
-        double[] xx = new double[4];
-        double[] yy = new double[4];
-        int[] ij = new int[2];
+        index();
 
-        int nx = x.length;
-        int ny = y.length;
-        Segment[][] segments = new Segment[ny][nx];
+        // The levels are extracted independently, in parallel on the
+        // common fork-join pool for large grids, and collected in order.
+        // Each task takes a run of levels and reuses its buffers, whose
+        // cell heads are as large as the grid. So there are no more tasks
+        // than workers, which bounds the buffers to one per worker.
         double atom = 1E-7 * (zMax - zMin);
+        int tasks = 1;
+        if ((long) levels.length * x.length * y.length >= PARALLEL_CELLS) {
+            tasks = Math.min(levels.length, ForkJoinPool.getCommonPoolParallelism());
+        }
 
-        for (int c = 0; c < levels.length; c++) {
-            double zc = levels[c];
-            for (int i = 0; i < nx; i++) {
-                for (int j = 0; j < ny; j++) {
-                    segments[j][i] = null;
-                }
-            }
-
-            for (int i = 0; i < nx - 1; i++) {
-                double xl = x[i];
-                double xh = x[i + 1];
-                for (int j = 0; j < ny - 1; j++) {
-                    double yl = y[j];
-                    double yh = y[j + 1];
-
-                    double zll = z[j][i];
-                    double zhl = z[j][i + 1];
-                    double zlh = z[j + 1][i];
-                    double zhh = z[j + 1][i + 1];
-
-                    // If the value at a corner is exactly equal to a contour level,
-                    // change that value by a tiny amount
-                    if (zll == zc) {
-                        zll += atom;
-                    }
-
-                    if (zhl == zc) {
-                        zhl += atom;
+        int n = tasks;
+        contours = IntStream.range(0, tasks).parallel()
+                .mapToObj(t -> {
+                    Segments segments = new Segments(x.length * y.length);
+                    List<Isoline> lines = new ArrayList<>();
+                    for (int c = levels.length * t / n; c < levels.length * (t + 1) / n; c++) {
+                        lines.addAll(isolines(levels[c], atom, segments));
                     }
+                    return lines;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
 
-                    if (zlh == zc) {
-                        zlh += atom;
+    /**
+     * Builds the interval index of cells, i.e. the minimum and maximum of
+     * grid values in each block of BLOCK x BLOCK cells, so that a level
+     * only visits the blocks whose range brackets it.
+     */
+    private void index() {
+        int nx = x.length;
+        int ny = y.length;
+        blockColumns = Math.max(1, (nx - 1 + BLOCK - 1) / BLOCK);
+        int blockRows = Math.max(1, (ny - 1 + BLOCK - 1) / BLOCK);
+        blockMin = new double[blockColumns * blockRows];
+        blockMax = new double[blockColumns * blockRows];
+        Arrays.fill(blockMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(blockMax, Double.NEGATIVE_INFINITY);
+
+        IntStream.range(0, blockRows).parallel().forEach(bj -> {
+            // The grid points of cells in the block, including the far edges.
+            int j1 = Math.min(ny - 1, (bj + 1) * BLOCK);
+            for (int j = bj * BLOCK; j <= j1; j++) {
+                double[] zj = z[j];
+                for (int bi = 0; bi < blockColumns; bi++) {
+                    int b = bj * blockColumns + bi;
+                    double min = blockMin[b];
+                    double max = blockMax[b];
+                    int i1 = Math.min(nx - 1, (bi + 1) * BLOCK);
+                    for (int i = bi * BLOCK; i <= i1; i++) {
+                        double v = zj[i];
+                        if (v < min) min = v;
+                        if (v > max) max = v;
                     }
+                    blockMin[b] = min;
+                    blockMax[b] = max;
+                }
+            }
+        });
+    }
 
-                    if (zhh == zc) {
-                        zhh += atom;
-                    }
+    /**
+     * Returns the contour lines at a level. The segments crossing each
+     * cell are found by marching squares, and then followed from cell to
+     * cell into contour lines.
+     */
+    private List<Isoline> isolines(double zc, double atom, Segments segments) {
+        int nx = x.length;
+        int ny = y.length;
+        double[] xx = new double[4];
+        double[] yy = new double[4];
+        segments.clear();
 
-                    // Check for intersections with sides
-                    int nacode = 0;
-                    if (!Double.isInfinite(zll)) {
-                        nacode += 1;
-                    }
-                    if (!Double.isInfinite(zhl)) {
-                        nacode += 2;
-                    }
-                    if (!Double.isInfinite(zlh)) {
-                        nacode += 4;
-                    }
-                    if (!Double.isInfinite(zhh)) {
-                        nacode += 8;
-                    }
+        // A cell crosses the level only if a corner is below it and
+        // another is not, since a corner equal to the level is raised.
+        for (int b = 0; b < blockMin.length; b++) {
+            if (!(blockMin[b] < zc && blockMax[b] >= zc)) {
+                continue;
+            }
 
-                    int k = 0;
-                    switch (nacode) {
-                        case 15:
-                            if (isIntersect(zll, zhl, zc)) {
-                                double f = getIntersectRatio(zll, zhl, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yl;
-                                k++;
-                            }
+            int bi = b % blockColumns;
+            int bj = b / blockColumns;
+            int i1 = Math.min(nx - 1, (bi + 1) * BLOCK);
+            int j1 = Math.min(ny - 1, (bj + 1) * BLOCK);
+            for (int j = bj * BLOCK; j < j1; j++) {
+                for (int i = bi * BLOCK; i < i1; i++) {
+                    int k = cross(i, j, zc, atom, xx, yy);
 
-                            if (isIntersect(zll, zlh, zc)) {
-                                double f = getIntersectRatio(zll, zlh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xl;
-                                k++;
+                    // We now have k(=2,4) endpoints. Decide which to join.
+                    if (k == 2) {
+                        segments.add(j * nx + i, xx[0], yy[0], xx[1], yy[1]);
+                    } else if (k == 4) {
+                        for (k = 3; k >= 1; k--) {
+                            int m = k;
+                            double xl = xx[k];
+                            for (int l = 0; l < k; l++) {
+                                if (xx[l] > xl) {
+                                    xl = xx[l];
+                                    m = l;
+                                }
                             }
 
-                            if (isIntersect(zhl, zhh, zc)) {
-                                double f = getIntersectRatio(zhl, zhh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xh;
-                                k++;
+                            if (m != k) {
+                                xl = xx[k];
+                                double yl = yy[k];
+                                xx[k] = xx[m];
+                                yy[k] = yy[m];
+                                xx[m] = xl;
+                                yy[m] = yl;
                             }
+                        }
 
-                            if (isIntersect(zlh, zhh, zc)) {
-                                double f = getIntersectRatio(zlh, zhh, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yh;
-                                k++;
-                            }
-                            break;
-
-                        case 14:
-                            if (isIntersect(zhl, zhh, zc)) {
-                                double f = getIntersectRatio(zhl, zhh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xh;
-                                k++;
-                            }
-                            if (isIntersect(zlh, zhh, zc)) {
-                                double f = getIntersectRatio(zlh, zhh, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yh;
-                                k++;
-                            }
-                            if (isIntersect(zlh, zhl, zc)) {
-                                double f = getIntersectRatio(zlh, zhl, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yh + f * (yl - yh);
-                                k++;
-                            }
-                            break;
-
-                        case 13:
-                            if (isIntersect(zll, zlh, zc)) {
-                                double f = getIntersectRatio(zll, zlh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xl;
-                                k++;
-                            }
-                            if (isIntersect(zlh, zhh, zc)) {
-                                double f = getIntersectRatio(zlh, zhh, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yh;
-                                k++;
-                            }
-                            if (isIntersect(zll, zhh, zc)) {
-                                double f = getIntersectRatio(zll, zhh, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yl + f * (yh - yl);
-                                k++;
-                            }
-                            break;
-
-                        case 11:
-                            if (isIntersect(zhl, zhh, zc)) {
-                                double f = getIntersectRatio(zhl, zhh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xh;
-                                k++;
-                            }
-                            if (isIntersect(zll, zhl, zc)) {
-                                double f = getIntersectRatio(zll, zhl, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yl;
-                                k++;
-                            }
-                            if (isIntersect(zll, zhh, zc)) {
-                                double f = getIntersectRatio(zll, zhh, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yl + f * (yh - yl);
-                                k++;
-                            }
-                            break;
-
-                        case 7:
-                            if (isIntersect(zll, zlh, zc)) {
-                                double f = getIntersectRatio(zll, zlh, zc);
-                                yy[k] = yl + f * (yh - yl);
-                                xx[k] = xl;
-                                k++;
-                            }
-                            if (isIntersect(zll, zhl, zc)) {
-                                double f = getIntersectRatio(zll, zhl, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yl;
-                                k++;
-                            }
-                            if (isIntersect(zlh, zhl, zc)) {
-                                double f = getIntersectRatio(zlh, zhl, zc);
-                                xx[k] = xl + f * (xh - xl);
-                                yy[k] = yh + f * (yl - yh);
-                                k++;
-                            }
-                            break;
+                        segments.add(j * nx + i, xx[0], yy[0], xx[1], yy[1]);
+                        segments.add(j * nx + i, xx[2], yy[2], xx[3], yy[3]);
+                    } else if (k != 0) {
+                        throw new IllegalStateException("k != 2 or 4");
                     }
+                }
+            }
+        }
 
-                    // We now have k(=2,4) endpoints. Decide which to join.
-                    Segment seglist = null;
-                    if (k > 0) {
-                        if (k == 2) {
-                            seglist = new Segment(xx[0], yy[0], xx[1], yy[1], seglist);
-                        } else if (k == 4) {
-                            for (k = 3; k >= 1; k--) {
-                                int m = k;
-                                xl = xx[k];
-                                for (int l = 0; l < k; l++) {
-                                    if (xx[l] > xl) {
-                                        xl = xx[l];
-                                        m = l;
-                                    }
-                                }
+        return follow(segments, zc);
+    }
 
-                                if (m != k) {
-                                    xl = xx[k];
-                                    yl = yy[k];
-                                    xx[k] = xx[m];
-                                    yy[k] = yy[m];
-                                    xx[m] = xl;
-                                    yy[m] = yl;
-                                }
-                            }
+    /**
+     * Finds the k(=0,2,4) points where the contour level crosses the sides
+     * (and diagonal) of cell (i, j).
+     * @return the number of crossing points.
+     */
+    private int cross(int i, int j, double zc, double atom, double[] xx, double[] yy) {
+        double xl = x[i];
+        double xh = x[i + 1];
+        double yl = y[j];
+        double yh = y[j + 1];
+
+        double zll = z[j][i];
+        double zhl = z[j][i + 1];
+        double zlh = z[j + 1][i];
+        double zhh = z[j + 1][i + 1];
+
+        // If the value at a corner is exactly equal to a contour level,
+        // change that value by a tiny amount
+        if (zll == zc) {
+            zll += atom;
+        }
 
-                            seglist = new Segment(xx[0], yy[0], xx[1], yy[1], seglist);
-                            seglist = new Segment(xx[2], yy[2], xx[3], yy[3], seglist);
-                        } else {
-                            throw new IllegalStateException("k != 2 or 4");
-                        }
-                    }
+        if (zhl == zc) {
+            zhl += atom;
+        }
+
+        if (zlh == zc) {
+            zlh += atom;
+        }
+
+        if (zhh == zc) {
+            zhh += atom;
+        }
+
+        // Check for intersections with sides
+        int nacode = 0;
+        if (!Double.isInfinite(zll)) {
+            nacode += 1;
+        }
+        if (!Double.isInfinite(zhl)) {
+            nacode += 2;
+        }
+        if (!Double.isInfinite(zlh)) {
+            nacode += 4;
+        }
+        if (!Double.isInfinite(zhh)) {
+            nacode += 8;
+        }
 
-                    segments[j][i] = seglist;
+        int k = 0;
+        switch (nacode) {
+            case 15:
+                if (isIntersect(zll, zhl, zc)) {
+                    double f = getIntersectRatio(zll, zhl, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yl;
+                    k++;
                 }
-            }
 
-            // Begin following contours.
-            // 1. Grab a segment
-            // 2. Follow its tail
-            // 3. Follow its head
-            // 4. Save the contour
-            for (int i = 0; i < nx - 1; i++) {
-                for (int j = 0; j < ny - 1; j++) {
-                    Segment seglist = null;
-                    while ((seglist = segments[j][i]) != null) {
-                        ij[0] = i;
-                        ij[1] = j;
-
-                        Segment start = seglist;
-                        Segment end = seglist;
-                        segments[j][i] = seglist.next;
-
-                        double xend = seglist.x1;
-                        double yend = seglist.y1;
-
-                        int dir = 0;
-                        while ((dir = segdir(xend, yend, ij)) != 0) {
-                            // tail
-                            int ii = ij[0];
-                            int jj = ij[1];
-                            Segment[] seg = {segments[jj][ii], null};
-                            segments[jj][ii] = segupdate(xend, yend, dir, true, seg);
-                            if (seg[1] == null) {
-                                break;
-                            }
-                            end.next = seg[1];
-                            end = seg[1];
-                            xend = end.x1;
-                            yend = end.y1;
-                        }
+                if (isIntersect(zll, zlh, zc)) {
+                    double f = getIntersectRatio(zll, zlh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xl;
+                    k++;
+                }
 
-                        end.next = null;
-                        ij[0] = i;
-                        ij[1] = j;
-                        xend = seglist.x0;
-                        yend = seglist.y0;
-                        dir = 0;
-                        while ((dir = segdir(xend, yend, ij)) != 0) {
-                            // head
-                            int ii = ij[0];
-                            int jj = ij[1];
-                            Segment[] seg = {segments[jj][ii], null};
-                            segments[jj][ii] = segupdate(xend, yend, dir, false, seg);
-                            if (seg[1] == null) {
-                                break;
-                            }
-                            seg[1].next = start;
-                            start = seg[1];
-                            xend = start.x0;
-                            yend = start.y0;
-                        }
+                if (isIntersect(zhl, zhh, zc)) {
+                    double f = getIntersectRatio(zhl, zhh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xh;
+                    k++;
+                }
+
+                if (isIntersect(zlh, zhh, zc)) {
+                    double f = getIntersectRatio(zlh, zhh, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yh;
+                    k++;
+                }
+                break;
 
-                        // Save the contour locations into the list of contours
-                        Isoline contour = new Isoline(zc, isLevelVisible);
+            case 14:
+                if (isIntersect(zhl, zhh, zc)) {
+                    double f = getIntersectRatio(zhl, zhh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xh;
+                    k++;
+                }
+                if (isIntersect(zlh, zhh, zc)) {
+                    double f = getIntersectRatio(zlh, zhh, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yh;
+                    k++;
+                }
+                if (isIntersect(zlh, zhl, zc)) {
+                    double f = getIntersectRatio(zlh, zhl, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yh + f * (yl - yh);
+                    k++;
+                }
+                break;
 
-                        Segment s = start;
-                        contour.add(s.x0, s.y0);
-                        while (s.next != null) {
-                            s = s.next;
-                            contour.add(s.x0, s.y0);
-                        }
-                        contour.add(s.x1, s.y1);
-                        
-                        if (!contour.isEmpty()) {
-                            contours.add(contour);
-                        }
+            case 13:
+                if (isIntersect(zll, zlh, zc)) {
+                    double f = getIntersectRatio(zll, zlh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xl;
+                    k++;
+                }
+                if (isIntersect(zlh, zhh, zc)) {
+                    double f = getIntersectRatio(zlh, zhh, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yh;
+                    k++;
+                }
+                if (isIntersect(zll, zhh, zc)) {
+                    double f = getIntersectRatio(zll, zhh, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yl + f * (yh - yl);
+                    k++;
+                }
+                break;
+
+            case 11:
+                if (isIntersect(zhl, zhh, zc)) {
+                    double f = getIntersectRatio(zhl, zhh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xh;
+                    k++;
+                }
+                if (isIntersect(zll, zhl, zc)) {
+                    double f = getIntersectRatio(zll, zhl, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yl;
+                    k++;
+                }
+                if (isIntersect(zll, zhh, zc)) {
+                    double f = getIntersectRatio(zll, zhh, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yl + f * (yh - yl);
+                    k++;
+                }
+                break;
+
+            case 7:
+                if (isIntersect(zll, zlh, zc)) {
+                    double f = getIntersectRatio(zll, zlh, zc);
+                    yy[k] = yl + f * (yh - yl);
+                    xx[k] = xl;
+                    k++;
+                }
+                if (isIntersect(zll, zhl, zc)) {
+                    double f = getIntersectRatio(zll, zhl, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yl;
+                    k++;
+                }
+                if (isIntersect(zlh, zhl, zc)) {
+                    double f = getIntersectRatio(zlh, zhl, zc);
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k] = yh + f * (yl - yh);
+                    k++;
+                }
+                break;
+        }
+
+        return k;
+    }
+
+    /**
+     * Follows the segments from cell to cell into contour lines.
+     */
+    private List<Isoline> follow(Segments segments, double zc) {
+        int nx = x.length;
+        int ny = y.length;
+        int[] head = segments.head;
+        int[] next = segments.next;
+        double[] xy = segments.xy;
+        int[] ij = new int[2];
+        List<Isoline> isolines = new ArrayList<>();
+
+        // Begin following contours.
+        // 1. Grab a segment
+        // 2. Follow its tail
+        // 3. Follow its head
+        // 4. Save the contour
+        // The cells with segments in the order of i, then j.
+        int[] order = new int[segments.touched];
+        for (int k = 0; k < order.length; k++) {
+            int cell = segments.cells[k];
+            order[k] = (cell % nx) * ny + cell / nx;
+        }
+        Arrays.sort(order);
+
+        for (int key : order) {
+            int i = key / ny;
+            int j = key % ny;
+            int seglist;
+            while ((seglist = head[j * nx + i]) >= 0) {
+                ij[0] = i;
+                ij[1] = j;
+
+                int start = seglist;
+                int end = seglist;
+                head[j * nx + i] = next[seglist];
+
+                double xend = xy[4 * seglist + 2];
+                double yend = xy[4 * seglist + 3];
+
+                int dir;
+                while ((dir = segdir(xend, yend, ij)) != 0) {
+                    // tail
+                    int seg = segupdate(segments, ij[1] * nx + ij[0], xend, yend, dir, true);
+                    if (seg < 0) {
+                        break;
                     }
+                    next[end] = seg;
+                    end = seg;
+                    xend = xy[4 * end + 2];
+                    yend = xy[4 * end + 3];
+                }
+
+                next[end] = -1;
+                ij[0] = i;
+                ij[1] = j;
+                xend = xy[4 * seglist];
+                yend = xy[4 * seglist + 1];
+                while ((dir = segdir(xend, yend, ij)) != 0) {
+                    // head
+                    int seg = segupdate(segments, ij[1] * nx + ij[0], xend, yend, dir, false);
+                    if (seg < 0) {
+                        break;
+                    }
+                    next[seg] = start;
+                    start = seg;
+                    xend = xy[4 * start];
+                    yend = xy[4 * start + 1];
+                }
+
+                // Save the contour locations into the list of contours
+                Isoline contour = new Isoline(zc, isLevelVisible);
+
+                int s = start;
+                contour.add(xy[4 * s], xy[4 * s + 1]);
+                while (next[s] >= 0) {
+                    s = next[s];
+                    contour.add(xy[4 * s], xy[4 * s + 1]);
+                }
+                contour.add(xy[4 * s + 2], xy[4 * s + 3]);
+
+                if (!contour.isEmpty()) {
+                    isolines.add(contour);
                 }
             }
         }
+
+        return isolines;
     }
 
     /**
@@ -622,84 +780,63 @@ public class Contour extends Plot {
     }
 
     /**
-     * Search seglist for a segment with endpoint (xend, yend).
+     * Search the segments of a cell for a segment with endpoint (xend, yend).
      * The cell entry direction is dir, and if tail=1/0 we are
      * building the tail/head of a contour. The matching segment
-     * is pointed to by seg and the updated segment list (with
-     * the matched segment stripped) is returned by the function.
-     */
-    private Segment segupdate(double xend, double yend, int dir, boolean tail, Segment[] seg) {
-        Segment seglist = seg[0];
-        if (seglist == null) {
-            seg[1] = null;
-            return null;
-        }
-
-        switch (dir) {
-            case 1:
-            case 3:
-                if (YMATCH(yend, seglist.y0)) {
-                    if (!tail) {
-                        seglist.swap();
-                    }
-                    seg[1] = seglist;
-                    return seglist.next;
-                }
-
-                if (YMATCH(yend, seglist.y1)) {
-                    if (tail) {
-                        seglist.swap();
-                    }
-                    seg[1] = seglist;
-                    return seglist.next;
-                }
-
-                if (YMATCH(yend, seglist.y1)) {
-                    if (tail) {
-                        seglist.swap();
-                    }
-                    seg[1] = seglist;
-                    return seglist.next;
-                }
-                break;
+     * is stripped from the cell and its index is returned, or -1
+     * if there is no match.
+     */
+    private int segupdate(Segments segments, int cell, double xend, double yend, int dir, boolean tail) {
+        int[] next = segments.next;
+        double[] xy = segments.xy;
+        int prev = -1;
+        for (int s = segments.head[cell]; s >= 0; prev = s, s = next[s]) {
+            // The offsets of the start and end coordinate to match.
+            int k0, k1;
+            switch (dir) {
+                case 1:
+                case 3:
+                    k0 = 4 * s + 1;
+                    k1 = 4 * s + 3;
+                    break;
+                case 2:
+                case 4:
+                    k0 = 4 * s;
+                    k1 = 4 * s + 2;
+                    break;
+                default:
+                    continue;
+            }
 
-            case 2:
-            case 4:
-                if (XMATCH(xend, seglist.x0)) {
-                    if (!tail) {
-                        seglist.swap();
-                    }
-                    seg[1] = seglist;
-                    return seglist.next;
+            double end = dir == 1 || dir == 3 ? yend : xend;
+            boolean match0 = xy[k0] == end;
+            if (match0 || xy[k1] == end) {
+                if (match0 != tail) {
+                    segments.swap(s);
                 }
 
-                if (XMATCH(xend, seglist.x1)) {
-                    if (tail) {
-                        seglist.swap();
-                    }
-                    seg[1] = seglist;
-                    return seglist.next;
+                if (prev < 0) {
+                    segments.head[cell] = next[s];
+                } else {
+                    next[prev] = next[s];
                 }
-                break;
+                return s;
+            }
         }
 
-        Segment[] seg2 = {seglist.next, seg[1]};
-        seglist.next = segupdate(xend, yend, dir, tail, seg2);
-        seg[1] = seg2[1];
-
-        return seglist;
+        return -1;
     }
 
-    @Override
-    public double[] getLowerBound() {
-        double[] bound = {MathEx.min(x), MathEx.min(y)};
-        return bound;
+    /**
+     * Returns the contour lines in the order of levels.
+     */
+    List<Isoline> isolines() {
+        return contours;
     }
 
     @Override
-    public double[] getUpperBound() {
-        double[] bound = {MathEx.max(x), MathEx.max(y)};
-        return bound;
+    protected double[][] computeBounds() {
+        return new double[][]{{MathEx.min(x), MathEx.min(y)}, {MathEx.max(x), MathEx.max(y)}};
     }
 
     @Override
@@ -147,17 +147,9 @@ public class Dendrogram extends Plot {
         g.setColor(c);
     }
     @Override
-    public double[] getLowerBound() {
+    protected double[][] computeBounds() {
         int n = p1.length / 3 + 1;
-        double[] bound = {-n / 100, 0};
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        int n = p1.length / 3 + 1;
-        double[] bound = {n + n / 100, 1.01 * height};
-        return bound;
+        return new double[][]{{-n / 100, 0}, {n + n / 100, 1.01 * height}};
     }
 
     @Override
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Columnar storage of plot data. Each column is a primitive DoubleBuffer,
+ * which may wrap a heap array, live off the heap, or be memory mapped from
+ * a file. Compared to double[][] with one small array per row, it has no
+ * per row object header, keeps each coordinate contiguous in memory, and
+ * supports data sets larger than the heap.
+ * <p>
+ * For point and line data, the columns are the x, y (and z) coordinates.
+ * For matrix data such as heat maps, column j holds the j-th column of
+ * the matrix.
+ *
+ * @author Haifeng Li
+ */
+public class DoubleColumns {
+
+    /**
+     * The size of double in bytes.
+     */
+    private static final int BYTES = Double.BYTES;
+    /**
+     * The data columns. Their positions are never moved so that absolute
+     * access is safe; bulk reads use duplicates.
+     */
+    private final DoubleBuffer[] columns;
+    /**
+     * The number of rows.
+     */
+    private final int size;
+
+    /**
+     * Constructor. The rows of each column are the remaining elements of
+     * the buffer, i.e. from its position to its limit.
+     * @param columns the data columns of same length.
+     */
+    public DoubleColumns(DoubleBuffer... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("No columns");
+        }
+
+        this.size = columns[0].remaining();
+        this.columns = new DoubleBuffer[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            if (columns[j].remaining() != size) {
+                throw new IllegalArgumentException("Columns have different sizes.");
+            }
+            this.columns[j] = columns[j].slice();
+        }
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of columns.
+     */
+    public int ncols() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the value at given row and column.
+     */
+    public double get(int i, int j) {
+        return columns[j].get(i);
+    }
+
+    /**
+     * Returns a read-only view of a column.
+     */
+    public DoubleBuffer column(int j) {
+        return columns[j].asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies a block of rows of a column into an array.
+     * @param j the column index.
+     * @param offset the index of first row.
+     * @param n the number of rows.
+     * @param dst the destination array.
+     */
+    public void get(int j, int offset, int n, double[] dst) {
+        DoubleBuffer buffer = columns[j].duplicate();
+        buffer.position(offset);
+        buffer.get(dst, 0, n);
+    }
+
+    /**
+     * Returns the minimum of each column. NaN values are ignored.
+     */
+    public double[] colMin() {
+        double[] min = new double[columns.length];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        for (int j = 0; j < columns.length; j++) {
+            DoubleBuffer column = columns[j];
+            for (int i = 0; i < size; i++) {
+                double x = column.get(i);
+                if (x < min[j]) {
+                    min[j] = x;
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Returns the maximum of each column. NaN values are ignored.
+     */
+    public double[] colMax() {
+        double[] max = new double[columns.length];
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (int j = 0; j < columns.length; j++) {
+            DoubleBuffer column = columns[j];
+            for (int i = 0; i < size; i++) {
+                double x = column.get(i);
+                if (x > max[j]) {
+                    max[j] = x;
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Writes the columns to a file in the layout read by
+     * {@link #map(Path, int)}, i.e. the columns one after another
+     * as big-endian doubles.
+     */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocateDirect(8192 * BYTES).order(ByteOrder.BIG_ENDIAN);
+            for (DoubleBuffer column : columns) {
+                DoubleBuffer src = column.duplicate();
+                while (src.hasRemaining()) {
+                    bytes.clear();
+                    DoubleBuffer dst = bytes.asDoubleBuffer();
+                    int n = Math.min(dst.remaining(), src.remaining());
+                    DoubleBuffer block = src.slice();
+                    block.limit(n);
+                    dst.put(block);
+                    src.position(src.position() + n);
+                    bytes.limit(n * BYTES);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates columns wrapping heap arrays without copying.
+     * @param columns the data columns of same length.
+     */
+    public static DoubleColumns of(double[]... columns) {
+        DoubleBuffer[] buffers = new DoubleBuffer[columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            buffers[j] = DoubleBuffer.wrap(columns[j]);
+        }
+        return new DoubleColumns(buffers);
+    }
+
+    /**
+     * Allocates zero-filled columns off the heap.
+     * @param size the number of rows.
+     * @param ncols the number of columns.
+     */
+    public static DoubleColumns allocateDirect(int size, int ncols) {
+        if (size < 0 || (long) size * BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for a direct column: " + size);
+        }
+
+        DoubleBuffer[] buffers = new DoubleBuffer[ncols];
+        for (int j = 0; j < ncols; j++) {
+            buffers[j] = ByteBuffer.allocateDirect(size * BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+        return new DoubleColumns(buffers);
+    }
+
+    /**
+     * Memory maps columns from a file written by {@link #write(Path)}. The
+     * file holds the columns one after another as big-endian doubles. The
+     * pages are loaded by the operating system on demand, so the data may
+     * be larger than the heap.
+     *
+     * @param file the data file.
+     * @param ncols the number of columns.
+     */
+    public static DoubleColumns map(Path file, int ncols) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes % ((long) ncols * BYTES) != 0) {
+                throw new IllegalArgumentException("File size doesn't match the number of columns: " + bytes);
+            }
+
+            long size = bytes / ncols / BYTES;
+            if (size * BYTES > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rows for a mapped column: " + size);
+            }
+
+            DoubleBuffer[] buffers = new DoubleBuffer[ncols];
+            for (int j = 0; j < ncols; j++) {
+                buffers[j] = channel.map(FileChannel.MapMode.READ_ONLY, j * size * BYTES, size * BYTES)
+                        .order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+            }
+            return new DoubleColumns(buffers);
+        }
+    }
+}
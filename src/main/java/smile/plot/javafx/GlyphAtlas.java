@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javafx.scene.paint.Color;
+
+/**
+ * The Latin-1 glyphs of a font in a color, rasterized once into a sprite
+ * sheet. A text is drawn by stamping the cells of its glyphs, which is
+ * much cheaper than text layout and rasterization per label when there
+ * are many labels. Runs of code points outside of Latin-1 fall back to
+ * fillText, so that surrogate pairs and combining marks stay together.
+ * The glyphs are placed at whole pixels, so the spacing may differ from
+ * regular text by a fraction of pixel.
+ *
+ * @author Haifeng Li
+ */
+class GlyphAtlas {
+
+    /**
+     * The first character in the atlas.
+     */
+    private static final int FIRST = 32;
+    /**
+     * The number of characters in the atlas.
+     */
+    private static final int SIZE = 256 - FIRST;
+    /**
+     * The number of cells per row of sheet.
+     */
+    private static final int COLUMNS = 16;
+    /**
+     * The maximum number of atlases kept.
+     */
+    private static final int CAPACITY = 32;
+    /**
+     * The atlases of recently used fonts and colors.
+     */
+    private static final Map<Key, GlyphAtlas> cache = new LinkedHashMap<Key, GlyphAtlas>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GlyphAtlas> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * The font of glyphs.
+     */
+    private final java.awt.Font awtFont;
+    /**
+     * The context to measure characters out of the atlas.
+     */
+    private final FontRenderContext frc = new FontRenderContext(null, true, false);
+    /**
+     * The sprite sheet of glyphs.
+     */
+    final SpriteSheet sheet;
+    /**
+     * The advance of each glyph.
+     */
+    private final double[] advance = new double[SIZE];
+    /**
+     * The width of cell.
+     */
+    private final int cellWidth;
+    /**
+     * The height of cell.
+     */
+    private final int cellHeight;
+    /**
+     * The distance from the top of cell to the baseline.
+     */
+    private final int baseline;
+    /**
+     * The padding of glyph in cell.
+     */
+    private final int pad;
+
+    /**
+     * The key of atlas cache.
+     */
+    private static class Key {
+        final java.awt.Font font;
+        final Color color;
+
+        Key(java.awt.Font font, Color color) {
+            this.font = font;
+            this.color = color;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, color);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return font.equals(key.font) && color.equals(key.color);
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private GlyphAtlas(java.awt.Font font, Color color) {
+        awtFont = font;
+
+        double maxAdvance = 1.0;
+        for (int i = 0; i < SIZE; i++) {
+            advance[i] = awtFont.getStringBounds(String.valueOf((char) (FIRST + i)), frc).getWidth();
+            maxAdvance = Math.max(maxAdvance, advance[i]);
+        }
+
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D sg = scratch.createGraphics();
+        FontMetrics metrics = sg.getFontMetrics(awtFont);
+        sg.dispose();
+
+        pad = Math.max(2, (int) Math.ceil(font.getSize2D() / 4));
+        cellWidth = (int) Math.ceil(maxAdvance) + 2 * pad;
+        cellHeight = metrics.getAscent() + metrics.getDescent() + 2 * pad;
+        baseline = pad + metrics.getAscent();
+
+        int rows = (SIZE + COLUMNS - 1) / COLUMNS;
+        BufferedImage image = new BufferedImage(COLUMNS * cellWidth, rows * cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(awtFont);
+        g.setColor(new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), (float) color.getOpacity()));
+        for (int i = 0; i < SIZE; i++) {
+            int x = (i % COLUMNS) * cellWidth + pad;
+            int y = (i / COLUMNS) * cellHeight + baseline;
+            g.drawString(String.valueOf((char) (FIRST + i)), x, y);
+        }
+        g.dispose();
+
+        sheet = new SpriteSheet(image);
+    }
+
+    /**
+     * Returns the atlas of a font in a color.
+     */
+    static GlyphAtlas of(java.awt.Font font, Color color) {
+        Key key = new Key(font, color);
+        synchronized (cache) {
+            GlyphAtlas atlas = cache.get(key);
+            if (atlas == null) {
+                atlas = new GlyphAtlas(font, color);
+                cache.put(key, atlas);
+            }
+            return atlas;
+        }
+    }
+
+    /**
+     * Returns the width of a string.
+     */
+    double width(String s) {
+        double w = 0.0;
+        for (int i = 0; i < s.length(); ) {
+            int c = s.charAt(i) - FIRST;
+            if (c >= 0 && c < SIZE) {
+                w += advance[c];
+                i++;
+            } else {
+                int end = run(s, i);
+                w += advance(s, i, end);
+                i = end;
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Returns the end of the run of code points out of the atlas that
+     * starts at the given index.
+     */
+    private static int run(String s, int begin) {
+        int i = begin;
+        while (i < s.length()) {
+            int cp = s.codePointAt(i);
+            if (cp >= FIRST && cp < FIRST + SIZE) {
+                break;
+            }
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the advance of a run of code points out of the atlas.
+     */
+    private double advance(String s, int begin, int end) {
+        return awtFont.getStringBounds(s, begin, end, frc).getWidth();
+    }
+
+    /**
+     * Draws a string with the left end of baseline at (x, y) in the
+     * current coordinates of context.
+     */
+    void draw(GraphicsContextInterface g2d, String s, double x, double y) {
+        double pen = x;
+        for (int i = 0; i < s.length(); ) {
+            char ch = s.charAt(i);
+            int c = ch - FIRST;
+            if (c >= 0 && c < SIZE) {
+                if (ch != ' ') {
+                    int sx = (c % COLUMNS) * cellWidth;
+                    int sy = (c / COLUMNS) * cellHeight;
+                    g2d.drawSprite(sheet, sx, sy, cellWidth, cellHeight, Math.round(pen) - pad, Math.round(y) - baseline);
+                }
+                pen += advance[c];
+                i++;
+            } else {
+                int end = run(s, i);
+                g2d.fillText(s.substring(i, end), pen, y);
+                pen += advance(s, i, end);
+                i = end;
+            }
+        }
+    }
+}
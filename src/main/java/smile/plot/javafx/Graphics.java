@@ -18,7 +18,6 @@ package smile.plot.javafx;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.text.Font;
-import javafx.scene.text.Text;
 
 /**
  * Graphics provides methods to draw graphical primitives in
@@ -44,10 +43,53 @@ public class Graphics {
      */
     java.awt.Shape originalClip;
 
-    Text text = new Text();
-
     FXStroke fxStroke = null;
 
+    /**
+     * The number of points projected and emitted in one path.
+     */
+    private static final int BATCH_SIZE = 4096;
+    /**
+     * Reusable buffer of Java2D x coordinates.
+     */
+    private final double[] batchX = new double[BATCH_SIZE];
+    /**
+     * Reusable buffer of Java2D y coordinates.
+     */
+    private final double[] batchY = new double[BATCH_SIZE];
+    /**
+     * Growable buffer of Java2D x coordinates for flat poly lines.
+     */
+    private double[] bufferX = new double[0];
+    /**
+     * Growable buffer of Java2D y coordinates for flat poly lines.
+     */
+    private double[] bufferY = new double[0];
+    /**
+     * Reusable buffers of logical coordinates read from columns.
+     * Allocated on first use.
+     */
+    private double[][] columnBuffer;
+    /**
+     * Growable scratch buffers of shapes, e.g. the screen coordinates of
+     * vertices. A graphics is created per render, so that shapes keep
+     * their per-paint buffers here rather than in fields shared by
+     * concurrent renders.
+     */
+    private final double[][] scratch = new double[4][0];
+    /**
+     * The screen boxes of labels placed in current paint.
+     */
+    private final LabelIndex labelIndex = new LabelIndex();
+    /**
+     * Reusable buffer of a projected point.
+     */
+    private final double[] sc = new double[2];
+    /**
+     * Reusable buffer of the second projected point of rectangles.
+     */
+    private final double[] sc2 = new double[2];
+
     /**
      * Constructor.
      */
@@ -55,6 +97,14 @@ public class Graphics {
         this.projection = projection;
     }
 
+    /**
+     * Returns true if coordinates keep sub-pixel precision when they are
+     * projected to the screen.
+     */
+    public boolean isSubpixel() {
+        return projection.isSubpixel();
+    }
+
     /**
      * Reset projection object when the PlotCanvas size changed.
      */
@@ -101,6 +151,15 @@ public class Graphics {
         return projection.canvas.base.upperBound;
     }
 
+    /**
+     * Clears the screen boxes of labels placed so far. The canvas calls it
+     * once at the beginning of a paint, so that labels of all shapes and
+     * axes are culled against each other.
+     */
+    void resetLabels() {
+        labelIndex.reset(projection.width, projection.height);
+    }
+
     /**
      * Get the current font.
      */
@@ -116,6 +175,15 @@ public class Graphics {
         return this;
     }
 
+    /**
+     * Set the font of given name and size. Unlike setFont(Font), it
+     * doesn't create a JavaFX font when rendering without the toolkit.
+     */
+    public Graphics setFont(String name, double size) {
+        g2d.setFont(name, size);
+        return this;
+    }
+
     /**
      * Get the current color.
      */
@@ -216,15 +284,20 @@ public class Graphics {
      * rotation is in radians. The coordinates are logical coordinates.
      */
     public void drawText(String label, double[] coord, double horizontalReference, double verticalReference, double rotation) {
-        int[] sc = projection.screenProjection(coord);
-        int x = sc[0];
-        int y = sc[1];
-        Font font = getFont();
-        double w = getStringWidth(label, font);
-        double h = font.getSize();
-
-        x -= (int) (w * horizontalReference);
-        y += (int) (h * verticalReference);
+        projection.screenProjection(coord, sc);
+        double x = sc[0];
+        double y = sc[1];
+        GlyphAtlas atlas = glyphAtlas();
+        double w = atlas != null ? atlas.width(label) : getStringWidth(label);
+        double h = g2d.getFontSize();
+
+        x -= projection.snap(w * horizontalReference);
+        y += projection.snap(h * verticalReference);
+
+        if (atlas != null && rotation == 0) {
+            atlas.draw(g2d, label, x, y);
+            return;
+        }
 
         g2d.save();
         g2d.translate(x, y);
@@ -232,11 +305,79 @@ public class Graphics {
             g2d.rotate(rotation * 180.0 / Math.PI);
             g2d.translate(-1.0 * w * horizontalReference, h * verticalReference);
         }
-        g2d.fillText(label, 0, 0);
+        fillText(atlas, label);
         g2d.restore();
 
     }
 
+    /**
+     * Reserves the screen box of a text that will be drawn by
+     * {@link #drawText(String, double[], double, double, double)} with the
+     * same arguments and current font. If the canvas culls colliding
+     * labels, returns false when the box overlaps the box of a text placed
+     * before in this paint, or lies out of the screen. Otherwise, returns
+     * true.
+     */
+    public boolean reserveText(String label, double[] coord, double horizontalReference, double verticalReference, double rotation) {
+        if (!projection.canvas.isLabelCulling()) {
+            return true;
+        }
+
+        projection.screenProjection(coord, sc);
+        GlyphAtlas atlas = glyphAtlas();
+        double w = atlas != null ? atlas.width(label) : getStringWidth(label);
+        double h = g2d.getFontSize();
+
+        // The anchor of text as in drawText.
+        double x = sc[0] - projection.snap(w * horizontalReference);
+        double y = sc[1] + projection.snap(h * verticalReference);
+        if (rotation == 0) {
+            return labelIndex.place(x, y - h, x + w, y);
+        }
+
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        double u0 = -w * horizontalReference;
+        double v0 = h * verticalReference;
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 4; corner++) {
+            double u = u0 + ((corner & 1) == 0 ? 0 : w);
+            double v = v0 - ((corner & 2) == 0 ? 0 : h);
+            double px = x + u * cos - v * sin;
+            double py = y + u * sin + v * cos;
+            x0 = Math.min(x0, px);
+            y0 = Math.min(y0, py);
+            x1 = Math.max(x1, px);
+            y1 = Math.max(y1, py);
+        }
+        return labelIndex.place(x0, y0, x1, y1);
+    }
+
+    /**
+     * Returns the glyph atlas of current font and color if the canvas
+     * draws text from atlases, or null otherwise.
+     */
+    private GlyphAtlas glyphAtlas() {
+        if (!projection.canvas.isGlyphAtlas()) {
+            return null;
+        }
+
+        Paint paint = g2d.getFill();
+        return paint instanceof Color ? GlyphAtlas.of(g2d.getAwtFont(), (Color) paint) : null;
+    }
+
+    /**
+     * Draws a string at the origin of current coordinates.
+     */
+    private void fillText(GlyphAtlas atlas, String label) {
+        if (atlas != null) {
+            atlas.draw(g2d, label, 0, 0);
+        } else {
+            g2d.fillText(label, 0, 0);
+        }
+    }
+
     /**
      * Draw a string with given rotation angle. Reference point is the center of
      * string. The logical coordinates are proportional to the base coordinates.
@@ -270,13 +411,20 @@ public class Graphics {
      * coordinates.
      */
     public void drawTextBaseRatio(String label, double[] coord, double horizontalReference, double verticalReference, double rotation) {
-        int[] sc = projection.screenProjectionBaseRatio(coord);
-        int x = sc[0];
-        int y = sc[1];
-
-        Font font = getFont();
-        double w = getStringWidth(label, font);
-        double h = font.getSize();
+        projection.screenProjectionBaseRatio(coord, sc);
+        double x = sc[0];
+        double y = sc[1];
+
+        GlyphAtlas atlas = glyphAtlas();
+        double w = atlas != null ? atlas.width(label) : getStringWidth(label);
+        double h = g2d.getFontSize();
+
+        if (atlas != null && rotation == 0) {
+            x -= projection.snap(w * horizontalReference);
+            y += projection.snap(h * verticalReference);
+            atlas.draw(g2d, label, x, y);
+            return;
+        }
 
         g2d.save();
         if (rotation != 0) {
@@ -284,43 +432,119 @@ public class Graphics {
             g2d.rotate(rotation * 180.0 / Math.PI);
             g2d.translate(-1.0 * w * horizontalReference, h * verticalReference);
         } else {
-            x -= (int) (w * horizontalReference);
-            y += (int) (h * verticalReference);
+            x -= projection.snap(w * horizontalReference);
+            y += projection.snap(h * verticalReference);
             g2d.translate(x, y);
         }
-        g2d.fillText(label, 0, 0);
+        fillText(atlas, label);
         g2d.restore();
 
     }
 
     /**
-     * Draw poly line.
+     * Draw poly line. The coordinates are in logical coordinates. Long
+     * lines are projected and stroked in blocks that share end points.
      */
-    private void drawLine(int[]... coord) {
-        double[] x = new double[coord.length];
-        for (int i = 0; i < coord.length; i++) {
-            x[i] = coord[i][0];
+    public void drawLine(double[]... coord) {
+        if (coord.length <= BATCH_SIZE) {
+            projection.project(coord, 0, coord.length, batchX, batchY);
+            g2d.strokePolyline(batchX, batchY, coord.length);
+            return;
         }
 
-        double[] y = new double[coord.length];
-        for (int i = 0; i < coord.length; i++) {
-            y[i] = coord[i][1];
+        for (int offset = 0; offset < coord.length - 1; offset += BATCH_SIZE - 1) {
+            int n = Math.min(BATCH_SIZE, coord.length - offset);
+            projection.project(coord, offset, n, batchX, batchY);
+            g2d.strokePolyline(batchX, batchY, n);
         }
+    }
 
-        g2d.strokePolyline(x, y, coord.length);
+    /**
+     * Returns a scratch buffer of at least given size for the paint of a
+     * shape. The content is valid until the next request of same index.
+     *
+     * @param index the index of buffer in [0, 4).
+     * @param size the minimum size of buffer.
+     */
+    double[] scratch(int index, int size) {
+        if (scratch[index].length < size) {
+            scratch[index] = new double[size];
+        }
+        return scratch[index];
     }
 
     /**
-     * Draw poly line. The coordinates are in logical coordinates.
+     * Draw poly line. The coordinates are in logical coordinates given
+     * as columns.
+     *
+     * @param x the logical x coordinates.
+     * @param y the logical y coordinates.
+     * @param n the number of vertices.
      */
-    public void drawLine(double[]... coord) {
-        int[][] sc = new int[coord.length][];
-        for (int i = 0; i < sc.length; i++) {
-            
-            sc[i] = projection.screenProjection(coord[i]);
+    public void drawLine(double[] x, double[] y, int n) {
+        if (bufferX.length < n) {
+            bufferX = new double[n];
+            bufferY = new double[n];
         }
 
-        drawLine(sc);
+        projection.project(x, y, bufferX, bufferY, n);
+        g2d.strokePolyline(bufferX, bufferY, n);
+    }
+
+    /**
+     * Draw poly line. The coordinates are in logical coordinates given as
+     * columns, which are read and projected in blocks that share end points.
+     *
+     * @param data the x, y (and z) columns of vertices.
+     */
+    public void drawLine(DoubleColumns data) {
+        int size = data.size();
+        if (size <= BATCH_SIZE) {
+            project(data, 0, size);
+            g2d.strokePolyline(batchX, batchY, size);
+            return;
+        }
+
+        for (int offset = 0; offset < size - 1; offset += BATCH_SIZE - 1) {
+            int n = Math.min(BATCH_SIZE, size - offset);
+            project(data, offset, n);
+            g2d.strokePolyline(batchX, batchY, n);
+        }
+    }
+
+    /**
+     * Draw the lines of an m x n mesh grid as one path. The vertices are
+     * projected once into the caller supplied buffers, which must hold
+     * m * n elements.
+     *
+     * @param data an m x n x d array of vertex logical coordinates.
+     * @param sx the buffer of vertex x coordinates on screen.
+     * @param sy the buffer of vertex y coordinates on screen.
+     */
+    public void drawMesh(double[][][] data, double[] sx, double[] sy) {
+        int m = data.length;
+        int n = data[0].length;
+        for (int i = 0; i < m; i++) {
+            projection.project(data[i], 0, n, sx, sy, i * n);
+        }
+
+        g2d.beginPath();
+        for (int i = 0; i < m; i++) {
+            int p = i * n;
+            g2d.moveTo(sx[p], sy[p]);
+            for (int j = 1; j < n; j++) {
+                g2d.lineTo(sx[p + j], sy[p + j]);
+            }
+        }
+
+        for (int j = 0; j < n; j++) {
+            g2d.moveTo(sx[j], sy[j]);
+            for (int i = 1; i < m; i++) {
+                g2d.lineTo(sx[i * n + j], sy[i * n + j]);
+            }
+        }
+        g2d.stroke();
+        g2d.beginPath();
     }
 
     /**
@@ -328,12 +552,20 @@ public class Graphics {
      * coordinates.
      */
     public void drawLineBaseRatio(double[]... coord) {
-        int[][] sc = new int[coord.length][];
-        for (int i = 0; i < sc.length; i++) {
-            sc[i] = projection.screenProjectionBaseRatio(coord[i]);
+        double[] x = batchX;
+        double[] y = batchY;
+        if (coord.length > BATCH_SIZE) {
+            x = new double[coord.length];
+            y = new double[coord.length];
+        }
+
+        for (int i = 0; i < coord.length; i++) {
+            projection.screenProjectionBaseRatio(coord[i], sc);
+            x[i] = sc[0];
+            y[i] = sc[1];
         }
 
-        drawLine(sc);
+        g2d.strokePolyline(x, y, coord.length);
     }
 
     /**
@@ -370,10 +602,16 @@ public class Graphics {
         int midSize = 3;
         int bigSize = 4;
 
-        int[] sc = projection.screenProjection(coord);
+        projection.screenProjection(coord, sc);
 
-        int x = sc[0];
-        int y = sc[1];
+        double x = sc[0];
+        double y = sc[1];
+
+        MarkerSprite sprite = markerSprite(dot);
+        if (sprite != null) {
+            sprite.draw(g2d, x, y);
+            return;
+        }
 
         switch (dot) {
             case '+':
@@ -440,44 +678,313 @@ public class Graphics {
     }
 
     /**
-     * Draw polygon. The coordinates are in logical coordinates.
+     * Draw a set of points with given pattern. The coordinates are in logical
+     * coordinates. The points are projected in blocks into reused buffers
+     * and the marks of each block are emitted as a single path.
+     *
+     * @param dot the pattern of dot. See {@link #drawPoint(char, double...)}.
+     * @param points the logical coordinates of points.
      */
-    public void drawPolygon(double[]... coord) {
-        int[][] c = new int[coord.length][2];
-        for (int i = 0; i < coord.length; i++) {
-            c[i] = projection.screenProjection(coord[i]);
+    public void drawPoints(char dot, double[][] points) {
+        for (int offset = 0; offset < points.length; offset += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, points.length - offset);
+            projection.project(points, offset, n, batchX, batchY);
+            drawMarks(dot, batchX, batchY, n);
+        }
+    }
+
+    /**
+     * Draw a set of points with given pattern. The coordinates are in logical
+     * coordinates packed in a flat array, i.e. (x0, y0, x1, y1, ...) for 2D
+     * and (x0, y0, z0, x1, y1, z1, ...) for 3D.
+     *
+     * @param dot the pattern of dot. See {@link #drawPoint(char, double...)}.
+     * @param xy the packed logical coordinates of points.
+     */
+    public void drawPoints(char dot, double[] xy) {
+        drawPoints(dot, xy, 0, xy.length / projection.canvas.base.dimension);
+    }
+
+    /**
+     * Draw a range of points with given pattern. The coordinates are in
+     * logical coordinates packed in a flat array as in
+     * {@link #drawPoints(char, double[])}.
+     *
+     * @param dot the pattern of dot. See {@link #drawPoint(char, double...)}.
+     * @param xy the packed logical coordinates of points.
+     * @param from the index of first point to draw.
+     * @param to the index after the last point to draw.
+     */
+    public void drawPoints(char dot, double[] xy, int from, int to) {
+        for (int offset = from; offset < to; offset += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, to - offset);
+            projection.project(xy, offset, n, batchX, batchY);
+            drawMarks(dot, batchX, batchY, n);
+        }
+    }
+
+    /**
+     * Draw a set of points with given pattern. The coordinates are in logical
+     * coordinates given as columns, which are read and projected in blocks.
+     *
+     * @param dot the pattern of dot. See {@link #drawPoint(char, double...)}.
+     * @param data the x, y (and z) columns of points.
+     */
+    public void drawPoints(char dot, DoubleColumns data) {
+        int size = data.size();
+        for (int offset = 0; offset < size; offset += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, size - offset);
+            project(data, offset, n);
+            drawMarks(dot, batchX, batchY, n);
         }
+    }
 
-        double[] x = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            x[i] = c[i][0];
+    /**
+     * Reads a block of rows from columns and projects them into the
+     * batch buffers.
+     */
+    private void project(DoubleColumns data, int offset, int n) {
+        int d = projection.canvas.base.dimension;
+        if (columnBuffer == null) {
+            columnBuffer = new double[d][BATCH_SIZE];
         }
-        double[] y = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            y[i] = c[i][1];
+
+        for (int j = 0; j < d; j++) {
+            data.get(j, offset, n, columnBuffer[j]);
+        }
+
+        if (d == 2) {
+            projection.project(columnBuffer[0], columnBuffer[1], batchX, batchY, n);
+        } else {
+            projection.project(columnBuffer[0], columnBuffer[1], columnBuffer[2], batchX, batchY, n);
         }
-        g2d.strokePolygon(x, y, c.length);
+    }
+
+    /**
+     * Emits the marks of points in Java2D coordinates as one path.
+     */
+    private void drawMarks(char dot, double[] xs, double[] ys, int n) {
+        MarkerSprite sprite = markerSprite(dot);
+        if (sprite != null) {
+            for (int i = 0; i < n; i++) {
+                double x = xs[i], y = ys[i];
+                if (Double.isFinite(x) && Double.isFinite(y)) {
+                    sprite.draw(g2d, x, y);
+                }
+            }
+            return;
+        }
+
+        int size = 2;
+        int midSize = 3;
+        int bigSize = 4;
+
+        g2d.beginPath();
+        switch (dot) {
+            case '+':
+                for (int i = 0; i < n; i++) {
+                    double x = xs[i], y = ys[i];
+                    g2d.moveTo(x - size, y);
+                    g2d.lineTo(x + size, y);
+                    g2d.moveTo(x, y - size);
+                    g2d.lineTo(x, y + size);
+                }
+                g2d.stroke();
+                break;
+
+            case '-':
+                for (int i = 0; i < n; i++) {
+                    double x = xs[i], y = ys[i];
+                    g2d.moveTo(x - size, y);
+                    g2d.lineTo(x + size, y);
+                }
+                g2d.stroke();
+                break;
+
+            case '|':
+                for (int i = 0; i < n; i++) {
+                    double x = xs[i], y = ys[i];
+                    g2d.moveTo(x, y - size);
+                    g2d.lineTo(x, y + size);
+                }
+                g2d.stroke();
+                break;
+
+            case 'x':
+                for (int i = 0; i < n; i++) {
+                    double x = xs[i], y = ys[i];
+                    g2d.moveTo(x - size, y - size);
+                    g2d.lineTo(x + size, y + size);
+                    g2d.moveTo(x + size, y - size);
+                    g2d.lineTo(x - size, y + size);
+                }
+                g2d.stroke();
+                break;
+
+            case '*':
+                for (int i = 0; i < n; i++) {
+                    double x = xs[i], y = ys[i];
+                    g2d.moveTo(x - bigSize, y);
+                    g2d.lineTo(x + bigSize, y);
+                    g2d.moveTo(x, y - bigSize);
+                    g2d.lineTo(x, y + bigSize);
+                    g2d.moveTo(x - midSize, y - midSize);
+                    g2d.lineTo(x + midSize, y + midSize);
+                    g2d.moveTo(x + midSize, y - midSize);
+                    g2d.lineTo(x - midSize, y + midSize);
+                }
+                g2d.stroke();
+                break;
+
+            case 'o':
+                appendCircles(xs, ys, n, size);
+                g2d.stroke();
+                break;
+
+            case 'O':
+                appendCircles(xs, ys, n, bigSize);
+                g2d.stroke();
+                break;
+
+            case '@':
+                appendCircles(xs, ys, n, size);
+                g2d.fill();
+                break;
+
+            case '#':
+                appendCircles(xs, ys, n, bigSize);
+                g2d.fill();
+                break;
+
+            case 's':
+                appendSquares(xs, ys, n, size);
+                g2d.stroke();
+                break;
+
+            case 'S':
+                appendSquares(xs, ys, n, bigSize);
+                g2d.stroke();
+                break;
+
+            case 'q':
+                appendSquares(xs, ys, n, size);
+                g2d.fill();
+                break;
+
+            case 'Q':
+                appendSquares(xs, ys, n, bigSize);
+                g2d.fill();
+                break;
+
+            default:
+                for (int i = 0; i < n; i++) {
+                    g2d.rect(xs[i], ys[i], 1, 1);
+                }
+                g2d.stroke();
+                break;
+        }
+        g2d.beginPath();
+    }
+
+    /**
+     * Returns the pre-rendered sprite of a mark in current colors, or null
+     * if marks are drawn as paths.
+     */
+    private MarkerSprite markerSprite(char dot) {
+        if (!projection.canvas.isMarkerSprites()) {
+            return null;
+        }
+
+        Paint stroke = g2d.getStroke();
+        Paint fill = g2d.getFill();
+        if (stroke instanceof Color && fill instanceof Color) {
+            return MarkerSprite.of(dot, (Color) stroke, (Color) fill, g2d.getLineWidth());
+        }
+        return null;
+    }
+
+    /**
+     * Appends circles of given radius centered at the points to the path.
+     */
+    private void appendCircles(double[] xs, double[] ys, int n, int radius) {
+        for (int i = 0; i < n; i++) {
+            g2d.moveTo(xs[i] + radius, ys[i]);
+            g2d.arc(xs[i], ys[i], radius, radius, 0, 360);
+        }
+    }
+
+    /**
+     * Appends squares of given half width centered at the points to the path.
+     */
+    private void appendSquares(double[] xs, double[] ys, int n, int size) {
+        for (int i = 0; i < n; i++) {
+            g2d.rect(xs[i] - size, ys[i] - size, 2 * size, 2 * size);
+        }
+    }
+
+    /**
+     * Draw polygon. The coordinates are in logical coordinates.
+     */
+    public void drawPolygon(double[]... coord) {
+        double[] x = batchX;
+        double[] y = batchY;
+        if (coord.length > BATCH_SIZE) {
+            x = new double[coord.length];
+            y = new double[coord.length];
+        }
+
+        projection.project(coord, 0, coord.length, x, y);
+        g2d.strokePolygon(x, y, coord.length);
     }
 
     /**
      * Fill polygon. The coordinates are in logical coordinates.
      */
     public void fillPolygon(double[]... coord) {
-        int[][] c = new int[coord.length][2];
-        for (int i = 0; i < coord.length; i++) {
-            c[i] = projection.screenProjection(coord[i]);
+        double[] x = batchX;
+        double[] y = batchY;
+        if (coord.length > BATCH_SIZE) {
+            x = new double[coord.length];
+            y = new double[coord.length];
         }
 
-        double[] x = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            x[i] = c[i][0];
-        }
-        double[] y = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            y[i] = c[i][1];
+        projection.project(coord, 0, coord.length, x, y);
+        g2d.fillPolygon(x, y, coord.length);
+    }
+
+    /**
+     * Fill a batch of polygons with the same number of vertices. The
+     * coordinates are in logical coordinates given as columns, in which
+     * the vertices of each polygon are consecutive. The vertices are
+     * projected at once, and the polygons are filled as a single path
+     * per block.
+     *
+     * @param x the logical x coordinates of vertices.
+     * @param y the logical y coordinates of vertices.
+     * @param sides the number of vertices of each polygon.
+     * @param n the number of polygons.
+     */
+    public void fillPolygons(double[] x, double[] y, int sides, int n) {
+        int size = sides * n;
+        if (bufferX.length < size) {
+            bufferX = new double[size];
+            bufferY = new double[size];
         }
 
-        g2d.fillPolygon(x, y, c.length);
+        projection.project(x, y, bufferX, bufferY, size);
+        int block = Math.max(1, BATCH_SIZE / sides);
+        for (int offset = 0; offset < n; offset += block) {
+            int end = Math.min(n, offset + block);
+            g2d.beginPath();
+            for (int k = offset * sides; k < end * sides; k += sides) {
+                g2d.moveTo(bufferX[k], bufferY[k]);
+                for (int v = 1; v < sides; v++) {
+                    g2d.lineTo(bufferX[k + v], bufferY[k + v]);
+                }
+                g2d.closePath();
+            }
+            g2d.fill();
+        }
     }
 
     /**
@@ -491,19 +998,14 @@ public class Graphics {
      * [0.0, 1.0].
      */
     public void fillPolygon(float alpha, double[]... coord) {
-        int[][] c = new int[coord.length][2];
-        for (int i = 0; i < coord.length; i++) {
-            c[i] = projection.screenProjection(coord[i]);
+        double[] x = batchX;
+        double[] y = batchY;
+        if (coord.length > BATCH_SIZE) {
+            x = new double[coord.length];
+            y = new double[coord.length];
         }
 
-        double[] x = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            x[i] = c[i][0];
-        }
-        double[] y = new double[c.length];
-        for (int i = 0; i < c.length; i++) {
-            y[i] = c[i][1];
-        }
+        projection.project(coord, 0, coord.length, x, y);
         g2d.fillPolygon(x, y, coord.length);
         // fixme composite
 
@@ -517,8 +1019,8 @@ public class Graphics {
             throw new UnsupportedOperationException("Only 2D graphics supports drawing rectangles.");
         }
 
-        int[] sc = projection.screenProjection(topLeft);
-        int[] sc2 = projection.screenProjection(rightBottom);
+        projection.screenProjection(topLeft, sc);
+        projection.screenProjection(rightBottom, sc2);
 
         g2d.strokeRect(sc[0], sc[1], sc2[0] - sc[0], sc2[1] - sc[1]);
     }
@@ -532,8 +1034,8 @@ public class Graphics {
             throw new UnsupportedOperationException("Only 2D graphics supports drawing rectangles.");
         }
 
-        int[] sc = projection.screenProjectionBaseRatio(topLeft);
-        int[] sc2 = projection.screenProjectionBaseRatio(rightBottom);
+        projection.screenProjectionBaseRatio(topLeft, sc);
+        projection.screenProjectionBaseRatio(rightBottom, sc2);
 
         g2d.strokeRect(sc[0], sc[1], sc2[0] - sc[0], sc2[1] - sc[1]);
     }
@@ -546,8 +1048,8 @@ public class Graphics {
             throw new UnsupportedOperationException("Only 2D graphics supports drawing rectangles.");
         }
 
-        int[] sc = projection.screenProjection(topLeft);
-        int[] sc2 = projection.screenProjection(rightBottom);
+        projection.screenProjection(topLeft, sc);
+        projection.screenProjection(rightBottom, sc2);
 
         g2d.fillRect(sc[0], sc[1], sc2[0] - sc[0], sc2[1] - sc[1]);
     }
@@ -561,8 +1063,8 @@ public class Graphics {
             throw new UnsupportedOperationException("Only 2D graphics supports drawing rectangles.");
         }
 
-        int[] sc = projection.screenProjectionBaseRatio(topLeft);
-        int[] sc2 = projection.screenProjectionBaseRatio(rightBottom);
+        projection.screenProjectionBaseRatio(topLeft, sc);
+        projection.screenProjectionBaseRatio(rightBottom, sc2);
 
         g2d.fillRect(sc[0], sc[1], sc2[0] - sc[0], sc2[1] - sc[1]);
     }
@@ -582,14 +1084,11 @@ public class Graphics {
     }
 
     public double getStringWidth(String s) {
-        return getStringWidth(s, getFont());
+        return g2d.stringWidth(s);
     }
 
     public double getStringWidth(String s, Font font) {
-        text.setText(s);
-        text.setFont(font);
-        final double width = text.getLayoutBounds().getWidth();
-        return width;
+        return g2d.stringWidth(s, font);
     }
 
 }
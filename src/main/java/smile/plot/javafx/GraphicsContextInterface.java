@@ -41,6 +41,55 @@ public interface GraphicsContextInterface {
 
     }
 
+    /**
+     * Returns the width of a string rendered in the given font. The default
+     * implementation uses the cached metrics of JavaFX text layout.
+     * Contexts that render without the JavaFX toolkit override it with
+     * their own font metrics.
+     */
+    default double stringWidth(String s, Font font) {
+        return TextMetrics.FX.width(s, font);
+    }
+
+    /**
+     * Returns the width of a string rendered in the current font.
+     */
+    default double stringWidth(String s) {
+        return stringWidth(s, getFont());
+    }
+
+    /**
+     * Returns the size of current font.
+     */
+    default double getFontSize() {
+        return getFont().getSize();
+    }
+
+    /**
+     * Returns the current font as a Java2D font, e.g. to rasterize glyphs.
+     */
+    default java.awt.Font getAwtFont() {
+        return RasterGraphicsContext.font(getFont());
+    }
+
+    /**
+     * Sets the font of given name and size. Unlike setFont(Font), contexts
+     * that render without the JavaFX toolkit override it so that no JavaFX
+     * font is created, which would start the toolkit.
+     */
+    default void setFont(String name, double size) {
+        setFont(new Font(name, size));
+    }
+
+    /**
+     * Stamps a sub-rectangle of a sprite sheet at its natural size.
+     * The default implementation draws the JavaFX image of sheet. Raster
+     * contexts may copy the pixels directly.
+     */
+    default void drawSprite(SpriteSheet sheet, int sx, int sy, int w, int h, double dx, double dy) {
+        drawImage(sheet.getImage(), sx, sy, w, h, dx, dy, w, h);
+    }
+
     void appendSVGPath(String svgpath);
 
     void applyEffect(Effect e);
@@ -17,6 +17,8 @@
  */
 package smile.plot.javafx;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javafx.geometry.VPos;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.BlendMode;
@@ -38,6 +40,11 @@ import javafx.scene.transform.Affine;
  */
 public class GraphicsContextProxy implements GraphicsContextInterface {
 
+    /**
+     * The fonts by name and size.
+     */
+    private static final Map<String, Font> FONTS = new ConcurrentHashMap<>();
+
     final private GraphicsContext gC;
 
     public GraphicsContextProxy(GraphicsContext gC) {
@@ -299,6 +306,11 @@ public class GraphicsContextProxy implements GraphicsContextInterface {
         gC.setFont(f);
     }
 
+    @Override
+    public void setFont(String name, double size) {
+        gC.setFont(FONTS.computeIfAbsent(name + ':' + size, key -> new Font(name, size)));
+    }
+
     @Override
     public void setFontSmoothingType(FontSmoothingType fontsmoothing) {
         gC.setFontSmoothingType(fontsmoothing);
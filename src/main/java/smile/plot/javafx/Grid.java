@@ -43,52 +43,13 @@ public class Grid extends Plot {
     @Override
     public void paint(Graphics g) {
         g.setColor(color);
-
-        for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[i].length - 1; j++) {
-                g.drawLine(data[i][j], data[i][j+1]);
-            }
-        }
-
-        for (int i = 0; i < data.length - 1; i++) {
-            for (int j = 0; j < data[i].length; j++) {
-                g.drawLine(data[i][j], data[i+1][j]);
-            }
-        }
+        int size = data.length * data[0].length;
+        g.drawMesh(data, g.scratch(0, size), g.scratch(1, size));
     }
     
     @Override
-    public double[] getLowerBound() {
-        double[] bound = {data[0][0][0], data[0][0][1]};
-        for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[i].length; j++) {
-                if (data[i][j][0] < bound[0]) {
-                    bound[0] = data[i][j][0];
-                }
-                if (data[i][j][1] < bound[1]) {
-                    bound[1] = data[i][j][1];
-                }
-            }
-        }
-
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = {data[0][0][0], data[0][0][1]};
-        for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[i].length; j++) {
-                if (data[i][j][0] > bound[0]) {
-                    bound[0] = data[i][j][0];
-                }
-                if (data[i][j][1] > bound[1]) {
-                    bound[1] = data[i][j][1];
-                }
-            }
-        }
-
-        return bound;
+    protected double[][] computeBounds() {
+        return Bounds.of(data);
     }
 
     /**
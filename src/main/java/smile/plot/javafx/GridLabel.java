@@ -18,7 +18,6 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
 
 /**
  * This is specialized label for axis grid labels.
@@ -29,12 +28,12 @@ class GridLabel extends Label {
     /**
      * The font for axis label.
      */
-    private static final Font BitStreamVeraSans = new Font("BitStream Vera Sans",  12);
+    private static final String BitStreamVeraSans = "BitStream Vera Sans";
 
     /**
      * Constructor.
      */
     public GridLabel(String text, double[] coordinates, double horizontalReference, double verticalReference, double rotation) {
-        super(text, coordinates, horizontalReference, verticalReference, rotation, BitStreamVeraSans, Color.BLACK);
+        super(text, coordinates, horizontalReference, verticalReference, rotation, BitStreamVeraSans, 12, Color.BLACK);
     }
 }
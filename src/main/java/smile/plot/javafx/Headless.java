@@ -30,7 +30,11 @@ import javax.swing.JInternalFrame;
  *
  * @author Tony Johnson
  * @author Mark Donszelmann
+ * @deprecated Plots are rendered without Swing or a display by
+ * {@link SmileFxCanvas#toImage(int, int)} and
+ * {@link SmileFxCanvas#writePng(java.io.OutputStream, int, int)}.
  */
+@Deprecated
 @SuppressWarnings("serial")
 public class Headless extends JInternalFrame {
 
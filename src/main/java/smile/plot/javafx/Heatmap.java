@@ -18,6 +18,8 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Arrays;
 import java.util.Optional;
 import smile.math.MathEx;
@@ -25,7 +27,14 @@ import smile.math.MathEx;
 /**
  * A heat map is a graphical representation of data where the values taken by
  * a variable in a two-dimensional map are represented as colors.
- * 
+ * <p>
+ * The cells are mapped to colors once into a packed ARGB buffer, which is
+ * recomputed only when the palette or data change. On paint, the cells
+ * are resampled to the screen through lookup tables from pixel to cell
+ * built from the precomputed cell edges, and drawn as a single image,
+ * so the cost depends on the screen size rather than the number of cells.
+ * Non-uniform x and y coordinates are supported.
+ *
  * @author Haifeng Li
  */
 public class Heatmap extends Plot {
@@ -39,9 +48,23 @@ public class Heatmap extends Plot {
      */
     private double[] y;
     /**
-     * The two-dimensional data matrix.
+     * The two-dimensional data matrix, or null if the matrix is given
+     * as columns.
      */
     private double[][] z;
+    /**
+     * The columns of data matrix, or null if the matrix is given as
+     * a two-dimensional array.
+     */
+    private DoubleColumns data;
+    /**
+     * The number of rows of data matrix.
+     */
+    private int nrow;
+    /**
+     * The number of columns of data matrix.
+     */
+    private int ncol;
     /**
      * The labels for columns of data matrix.
      */
@@ -70,6 +93,32 @@ public class Heatmap extends Plot {
      * If show axis marks.
      */
     private boolean isLabelVisible;
+    /**
+     * The edges of cell columns, i.e. the midpoints of x and the outer
+     * edges of first and last columns.
+     */
+    private double[] xEdges;
+    /**
+     * The edges of cell rows, i.e. the midpoints of y and the outer
+     * edges of first and last rows.
+     */
+    private double[] yEdges;
+    /**
+     * The ARGB color of each cell in row-major order. Computed lazily.
+     */
+    private int[] colors;
+    /**
+     * The cells resampled to the screen, cached for the projection state.
+     */
+    private SpriteSheet image;
+    /**
+     * The screen location of image.
+     */
+    private int imageX, imageY;
+    /**
+     * The projection state that the image was resampled with.
+     */
+    private double[] imageState;
 
     /**
      * Constructor.
@@ -88,6 +137,8 @@ public class Heatmap extends Plot {
         }
 
         this.z = z;
+        this.nrow = z.length;
+        this.ncol = z[0].length;
         this.columnLabels = columnLabels;
         this.rowLabels = rowLabels;
         this.palette = palette;
@@ -105,6 +156,27 @@ public class Heatmap extends Plot {
         this.x = x;
         this.y = y;
         this.z = z;
+        this.nrow = z.length;
+        this.ncol = z[0].length;
+        this.palette = palette;
+        init();
+    }
+
+    /**
+     * Constructor. The cells are read from the columns at paint time
+     * without being copied, so that the matrix may live off the heap
+     * or be memory mapped.
+     * @param x x coordinate of data matrix cells. Must be in ascending order.
+     * @param y y coordinate of data matrix cells. Must be in ascending order.
+     * @param z the columns of data matrix to be shown in pseudo heat map.
+     * @param palette the color palette.
+     */
+    public Heatmap(double[] x, double[] y, DoubleColumns z, Color[] palette) {
+        this.x = x;
+        this.y = y;
+        this.data = z;
+        this.nrow = z.size();
+        this.ncol = z.ncols();
         this.palette = palette;
         init();
     }
@@ -116,46 +188,108 @@ public class Heatmap extends Plot {
         isLabelVisible = x != null || y != null || rowLabels != null || columnLabels != null;
 
         if (x == null) {
-            x = new double[z[0].length];
+            x = new double[ncol];
             for (int i = 0; i < x.length; i++) {
                 x[i] = i + 0.5;
             }
         }
 
         if (y == null) {
-            y = new double[z.length];
+            y = new double[nrow];
             for (int i = 0; i < y.length; i++) {
                 y[i] = y.length - i - 0.5;
             }
         }
 
-        if (x.length != z[0].length) {
-            throw new IllegalArgumentException("x.length != z[0].length");
+        if (x.length != ncol) {
+            throw new IllegalArgumentException("x.length != ncol");
         }
 
-        if (y.length != z.length) {
-            throw new IllegalArgumentException("y.length != z.length");
+        if (y.length != nrow) {
+            throw new IllegalArgumentException("y.length != nrow");
         }
 
+        xEdges = edges(x);
+        yEdges = edges(y);
+        range();
+    }
+
+    /**
+     * Returns the edges of cells centered at given coordinates. The inner
+     * edges are the midpoints of neighbors.
+     */
+    private static double[] edges(double[] x) {
+        int n = x.length;
+        double[] edges = new double[n + 1];
+        if (n == 1) {
+            edges[0] = x[0] - 0.5;
+            edges[1] = x[0] + 0.5;
+            return edges;
+        }
+
+        for (int i = 1; i < n; i++) {
+            edges[i] = (x[i - 1] + x[i]) / 2;
+        }
+        edges[0] = x[0] - (x[1] - x[0]) / 2;
+        edges[n] = x[n - 1] + (x[n - 1] - x[n - 2]) / 2;
+        return edges;
+    }
+
+    /**
+     * Computes the range of colors from the data.
+     */
+    private void range() {
         // In case of outliers, we use 1% and 99% quantiles as lower and
         // upper limits instead of min and max.
-        int n = z.length * z[0].length;
-        double[] values = new double[n];
-        int i = 0;
-        for (double[] zi : z) {
-            for (double zij : zi) {
-                if (!Double.isNaN(zij)) {
-                    values[i++] = zij;
-                }
-            }
+        ColorRange range = z != null ?
+                ColorRange.of(z, ColorRange.Method.EXACT) :
+                ColorRange.of(data, ColorRange.Method.EXACT);
+
+        if (range.size() > 0) {
+            min = range.getLower();
+            max = range.getUpper();
+            width = (max - min) / palette.length;
         }
-        
-        if (i > 0) {
-            Arrays.sort(values, 0, i);
-            min = values[(int) Math.round(0.01 * i)];
-            max = values[(int) Math.round(0.99 * (i-1))];
+    }
+
+    /**
+     * Sets the range of colors, e.g. the approximate or other quantiles
+     * of data computed by {@link ColorRange}. The range is recomputed
+     * as 1% and 99% quantiles when the plot is invalidated.
+     */
+    public Heatmap setColorRange(ColorRange range) {
+        synchronized (this) {
+            min = range.getLower();
+            max = range.getUpper();
             width = (max - min) / palette.length;
+            colors = null;
+            image = null;
         }
+        return this;
+    }
+
+    /**
+     * Sets the color palette.
+     */
+    public Heatmap setPalette(Color[] palette) {
+        synchronized (this) {
+            this.palette = palette;
+            width = (max - min) / palette.length;
+            colors = null;
+            image = null;
+        }
+        return this;
+    }
+
+    /**
+     * Recomputes the range of colors and the colors of cells from the
+     * data on next paint. Should be called after the data matrix is
+     * modified in place.
+     */
+    public synchronized void invalidate() {
+        range();
+        colors = null;
+        image = null;
     }
 
     @Override
@@ -164,7 +298,7 @@ public class Heatmap extends Plot {
             return Optional.empty();
         }
         
-        if (coord[0] < 0.0 || coord[0] > z[0].length || coord[1] < 0.0 || coord[1] > z.length) {
+        if (coord[0] < 0.0 || coord[0] > ncol || coord[1] < 0.0 || coord[1] > nrow) {
             return Optional.empty();
         }
 
@@ -175,74 +309,29 @@ public class Heatmap extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = {MathEx.min(x), MathEx.min(y)};
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = {MathEx.max(x), MathEx.max(y)};
-        return bound;
+    protected double[][] computeBounds() {
+        return new double[][]{{MathEx.min(x), MathEx.min(y)}, {MathEx.max(x), MathEx.max(y)}};
     }
 
     @Override
     public void paint(Graphics g) {
-        double[] start = new double[2];
-        double[] end = new double[2];
-
-        for (int i = 0; i < z.length; i++) {
-            for (int j = 0; j < z[i].length; j++) {
-                if (Double.isNaN(z[i][j])) {
-                    g.setColor(Color.WHITE);
-                } else {
-                    int k = (int) ((z[i][j] - min) / width);
-                    
-                    if (k < 0) {
-                        k = 0;
-                    }
-                    
-                    if (k >= palette.length) {
-                        k = palette.length - 1;
-                    }
-                    
-                    g.setColor(palette[k]);
-                }
-
-                start[0] = x[j];
-                if (j == 0) {
-                    start[0] -= Math.abs(x[j + 1] - x[j]) / 2;
-                } else {
-                    start[0] -= Math.abs(x[j] - x[j - 1]) / 2;
-                }
-
-                start[1] = y[i];
-                if (i == 0) {
-                    start[1] += Math.abs(y[i + 1] - y[i]) / 2;
-                } else {
-                    start[1] += Math.abs(y[i] - y[i - 1]) / 2;
-                }
-
-                end[0] = x[j];
-                if (j == x.length - 1) {
-                    end[0] += Math.abs(x[j] - x[j - 1]) / 2;
-                } else {
-                    end[0] += Math.abs(x[j + 1] - x[j]) / 2;
-                }
-
-                end[1] = y[i];
-                if (i == y.length - 1) {
-                    end[1] -= Math.abs(y[i] - y[i - 1]) / 2;
-                } else {
-                    end[1] -= Math.abs(y[i + 1] - y[i]) / 2;
-                }
+        synchronized (this) {
+            double[] state = g.projection.state();
+            if (image == null || !Arrays.equals(state, imageState)) {
+                resample(g.projection);
+                imageState = state;
+            }
 
-                g.fillRect(start, end);
+            if (image != null) {
+                g.g2d.drawSprite(image, 0, 0, image.getWidth(), image.getHeight(), imageX, imageY);
             }
         }
 
         g.clearClip();
 
+        double[] start = new double[2];
+        double[] end = new double[2];
+
         double height = 0.7 / palette.length;
         start[0] = 1.1;
         start[1] = 0.15;
@@ -277,6 +366,123 @@ public class Heatmap extends Plot {
         g.drawTextBaseRatio(String.valueOf(MathEx.round(min, decimal)), start,0.0, 0.0);
     }
     
+    /**
+     * Returns the color of cell value.
+     */
+    private int color(double z) {
+        if (Double.isNaN(z)) {
+            return 0xFFFFFFFF;
+        }
+
+        int k = (int) ((z - min) / width);
+        if (k < 0) {
+            k = 0;
+        }
+
+        if (k >= palette.length) {
+            k = palette.length - 1;
+        }
+
+        return Palette.argb(palette[k]);
+    }
+
+    /**
+     * Maps the cells to colors.
+     */
+    private void colorize() {
+        colors = new int[nrow * ncol];
+        if (z != null) {
+            for (int i = 0; i < nrow; i++) {
+                double[] row = z[i];
+                for (int j = 0; j < ncol; j++) {
+                    colors[i * ncol + j] = color(row[j]);
+                }
+            }
+        } else {
+            double[] column = new double[nrow];
+            for (int j = 0; j < ncol; j++) {
+                data.get(j, 0, nrow, column);
+                for (int i = 0; i < nrow; i++) {
+                    colors[i * ncol + j] = color(column[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resamples the cells to the screen pixels they cover.
+     */
+    private void resample(Projection projection) {
+        if (colors == null) {
+            colorize();
+        }
+
+        // The screen coordinates of cell edges. In 2D, the screen x only
+        // depends on the logical x, and the screen y on the logical y.
+        double[] sx = new double[ncol + 1];
+        double[] sy = new double[nrow + 1];
+        double[] dummy = new double[Math.max(ncol, nrow) + 1];
+        double[] ys = new double[ncol + 1];
+        Arrays.fill(ys, yEdges[0]);
+        projection.project(xEdges, ys, sx, dummy, ncol + 1);
+        double[] xs = new double[nrow + 1];
+        Arrays.fill(xs, xEdges[0]);
+        projection.project(xs, yEdges, dummy, sy, nrow + 1);
+
+        int x0 = Math.max(0, (int) Math.floor(Math.min(sx[0], sx[ncol])));
+        int x1 = Math.min(projection.width, (int) Math.ceil(Math.max(sx[0], sx[ncol])));
+        int y0 = Math.max(0, (int) Math.floor(Math.min(sy[0], sy[nrow])));
+        int y1 = Math.min(projection.height, (int) Math.ceil(Math.max(sy[0], sy[nrow])));
+        if (x1 <= x0 || y1 <= y0) {
+            image = null;
+            return;
+        }
+
+        int w = x1 - x0;
+        int h = y1 - y0;
+        int[] columnOf = lookup(sx, x0, w);
+        int[] rowOf = lookup(sy, y0, h);
+
+        BufferedImage buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+        for (int py = 0; py < h; py++) {
+            int row = rowOf[py];
+            if (row < 0) continue;
+
+            int offset = row * ncol;
+            for (int px = 0, k = py * w; px < w; px++, k++) {
+                int col = columnOf[px];
+                if (col >= 0) {
+                    pixels[k] = colors[offset + col];
+                }
+            }
+        }
+
+        image = new SpriteSheet(buffer);
+        imageX = x0;
+        imageY = y0;
+    }
+
+    /**
+     * Returns the cell of each pixel in [from, from + n), or -1 if the
+     * pixel center is not covered by any cell.
+     * @param edges the screen coordinates of cell edges, in either order.
+     */
+    private static int[] lookup(double[] edges, int from, int n) {
+        int[] cell = new int[n];
+        Arrays.fill(cell, -1);
+        for (int i = 0; i + 1 < edges.length; i++) {
+            double lo = Math.min(edges[i], edges[i + 1]);
+            double hi = Math.max(edges[i], edges[i + 1]);
+            int p0 = Math.max(from, (int) Math.ceil(lo - 0.5));
+            int p1 = Math.min(from + n, (int) Math.ceil(hi - 0.5));
+            for (int p = p0; p < p1; p++) {
+                cell[p - from] = i;
+            }
+        }
+        return cell;
+    }
+
     @Override
     public SmileFxCanvas canvas() {
         SmileFxCanvas canvas = new SmileFxCanvas(getLowerBound(), getUpperBound(), false);
@@ -295,7 +501,7 @@ public class Heatmap extends Plot {
         if (rowLabels != null) {
             double[] locations = new double[rowLabels.length];
             for (int i = 0; i < rowLabels.length; i++) {
-                locations[i] = z.length - i - 0.5;
+                locations[i] = nrow - i - 0.5;
             }
             canvas.getAxis(1).setTicks(rowLabels, locations);
         }
@@ -338,6 +544,16 @@ public class Heatmap extends Plot {
         return new Heatmap((double[]) null, null, z, palette);
     }
 
+    /**
+     * Creates a heatmap of columnar data, which may be off heap or
+     * memory mapped. Column j of data holds the j-th column of matrix.
+     * @param z the columns of data matrix to be shown in pseudo heat map.
+     * @param palette the color palette.
+     */
+    public static Heatmap of(DoubleColumns z, Color[] palette) {
+        return new Heatmap(null, null, z, palette);
+    }
+
     /**
      * Constructor. Use 16-color jet color palette.
      */
@@ -0,0 +1,436 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A matrix stored on disk in square tiles with downsampled levels, i.e.
+ * a mip-map pyramid, for heat maps of matrices that don't fit in memory.
+ * Level 0 is the matrix itself, and each cell of level k + 1 aggregates
+ * (the mean or maximum of) 2 x 2 cells of level k, until a level fits in
+ * one tile. Since a tile of level k + 1 covers 2 x 2 tiles of level k,
+ * the levels are built tile by tile with constant memory.
+ * <p>
+ * The cells are stored as big-endian floats, row by row in a tile, and
+ * the tiles of a level are stored row by row. The cells beyond the edges
+ * of matrix are NaN. The tiles are memory mapped on demand, so that a
+ * viewer only touches the tiles that it shows.
+ *
+ * @author Haifeng Li
+ */
+public class HeatmapPyramid implements AutoCloseable {
+
+    /**
+     * The aggregate of cells in a downsampled level.
+     */
+    public enum Aggregate {
+        /** The mean of cells, which shows the average intensity. */
+        MEAN,
+        /** The maximum of cells, which keeps the peaks visible. */
+        MAX
+    }
+
+    /** The reader of matrix rows. */
+    public interface RowReader {
+        /**
+         * Reads a row of matrix.
+         * @param i the row index.
+         * @param row the buffer of row values.
+         */
+        void read(int i, double[] row);
+    }
+
+    /**
+     * The magic number of file.
+     */
+    private static final int MAGIC = 0x534D4850;
+    /**
+     * The size of file header in bytes.
+     */
+    private static final int HEADER = 64;
+    /**
+     * The number of bytes per cell.
+     */
+    private static final int BYTES = Float.BYTES;
+    /**
+     * The maximum number of mapped tiles kept.
+     */
+    private static final int CACHE_SIZE = 256;
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+    /**
+     * The number of rows.
+     */
+    private final int nrow;
+    /**
+     * The number of columns.
+     */
+    private final int ncol;
+    /**
+     * The width and height of tiles.
+     */
+    private final int tileSize;
+    /**
+     * The aggregate of downsampled levels.
+     */
+    private final Aggregate aggregate;
+    /**
+     * The file offset of each level.
+     */
+    private final long[] offset;
+    /**
+     * The mapped tiles in access order.
+     */
+    private final LinkedHashMap<Long, FloatBuffer> cache = new LinkedHashMap<Long, FloatBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, FloatBuffer> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Constructor.
+     */
+    private HeatmapPyramid(FileChannel channel, int nrow, int ncol, int tileSize, Aggregate aggregate) {
+        this.channel = channel;
+        this.nrow = nrow;
+        this.ncol = ncol;
+        this.tileSize = tileSize;
+        this.aggregate = aggregate;
+        this.offset = offsets(nrow, ncol, tileSize);
+    }
+
+    /**
+     * Returns the file offset of each level and, at last, the file size.
+     */
+    private static long[] offsets(int nrow, int ncol, int tileSize) {
+        int levels = 1;
+        while (Math.max(nrow, ncol) > (long) tileSize << (levels - 1)) {
+            levels++;
+        }
+
+        long[] offset = new long[levels + 1];
+        offset[0] = HEADER;
+        for (int k = 0; k < levels; k++) {
+            long tiles = (long) tiles(nrow, tileSize, k) * tiles(ncol, tileSize, k);
+            offset[k + 1] = offset[k] + tiles * tileSize * tileSize * BYTES;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the number of cells of level k along a dimension.
+     */
+    private static int cells(int n, int k) {
+        return (int) (((long) n + (1L << k) - 1) >> k);
+    }
+
+    /**
+     * Returns the number of tiles of level k along a dimension.
+     */
+    private static int tiles(int n, int tileSize, int k) {
+        return (cells(n, k) + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Returns the number of rows of matrix.
+     */
+    public int nrow() {
+        return nrow;
+    }
+
+    /**
+     * Returns the number of columns of matrix.
+     */
+    public int ncol() {
+        return ncol;
+    }
+
+    /**
+     * Returns the number of levels.
+     */
+    public int levels() {
+        return offset.length - 1;
+    }
+
+    /**
+     * Returns the width and height of tiles.
+     */
+    public int tileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns the aggregate of downsampled levels.
+     */
+    public Aggregate aggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Returns the number of rows of a level.
+     */
+    public int nrow(int level) {
+        return cells(nrow, level);
+    }
+
+    /**
+     * Returns the number of columns of a level.
+     */
+    public int ncol(int level) {
+        return cells(ncol, level);
+    }
+
+    /**
+     * Returns the number of tile rows of a level.
+     */
+    int tileRows(int level) {
+        return tiles(nrow, tileSize, level);
+    }
+
+    /**
+     * Returns the number of tile columns of a level.
+     */
+    int tileColumns(int level) {
+        return tiles(ncol, tileSize, level);
+    }
+
+    /**
+     * Returns the cell at given row and column of a level.
+     */
+    public double get(int level, int i, int j) {
+        FloatBuffer tile = tile(level, i / tileSize, j / tileSize);
+        return tile.get((i % tileSize) * tileSize + j % tileSize);
+    }
+
+    /**
+     * Returns a mapped tile of a level. The cells are in row-major order.
+     * Thread safe.
+     */
+    synchronized FloatBuffer tile(int level, int row, int col) {
+        long key = ((long) level << 58) | ((long) row << 29) | col;
+        FloatBuffer tile = cache.get(key);
+        if (tile == null) {
+            long bytes = (long) tileSize * tileSize * BYTES;
+            long position = offset[level] + ((long) row * tileColumns(level) + col) * bytes;
+            try {
+                tile = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes)
+                        .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            cache.put(key, tile);
+        }
+        return tile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            cache.clear();
+        }
+        channel.close();
+    }
+
+    /**
+     * Memory maps a pyramid from a file written by
+     * {@link #write(Path, int, int, int, Aggregate, RowReader)}. The file
+     * stays open until the pyramid is closed.
+     * @param file the pyramid file.
+     */
+    public static HeatmapPyramid map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the full header
+            }
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a heatmap pyramid file: " + file);
+            }
+
+            int nrow = header.getInt();
+            int ncol = header.getInt();
+            int tileSize = header.getInt();
+            int ordinal = header.getInt();
+            checkSize(nrow, ncol, tileSize);
+            if (ordinal < 0 || ordinal >= Aggregate.values().length) {
+                throw new IllegalArgumentException("Invalid aggregate in heatmap pyramid file: " + ordinal);
+            }
+
+            Aggregate aggregate = Aggregate.values()[ordinal];
+            HeatmapPyramid pyramid = new HeatmapPyramid(channel, nrow, ncol, tileSize, aggregate);
+            if (channel.size() < pyramid.offset[pyramid.levels()]) {
+                throw new IllegalArgumentException("Truncated heatmap pyramid file: " + file);
+            }
+            return pyramid;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Checks the matrix size and the tile size, which must be even in
+     * [2, 4096].
+     */
+    private static void checkSize(int nrow, int ncol, int tileSize) {
+        if (nrow <= 0 || ncol <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid matrix size: %d x %d", nrow, ncol));
+        }
+
+        if (tileSize < 2 || tileSize > 4096 || tileSize % 2 != 0) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+    }
+
+    /**
+     * Writes a matrix and its downsampled levels to a file. The rows are
+     * read one by one, so the matrix may be computed on the fly, e.g. a
+     * distance matrix. Only a band of tiles is mapped at a time.
+     * @param file the pyramid file.
+     * @param nrow the number of rows.
+     * @param ncol the number of columns.
+     * @param tileSize the width and height of tiles, e.g. 256.
+     * @param aggregate the aggregate of downsampled levels.
+     * @param rows the reader of matrix rows.
+     */
+    public static void write(Path file, int nrow, int ncol, int tileSize, Aggregate aggregate, RowReader rows) throws IOException {
+        checkSize(nrow, ncol, tileSize);
+        long band = (long) tiles(ncol, tileSize, 0) * tileSize * tileSize * BYTES;
+        if (band > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many columns for the tile size: " + ncol);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            HeatmapPyramid pyramid = new HeatmapPyramid(channel, nrow, ncol, tileSize, aggregate);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(nrow).putInt(ncol).putInt(tileSize).putInt(aggregate.ordinal());
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+
+            pyramid.writeBase(rows, band);
+            for (int k = 1; k < pyramid.levels(); k++) {
+                pyramid.downsample(k);
+            }
+        }
+    }
+
+    /**
+     * Writes level 0 band by band, each band being a row of tiles.
+     */
+    private void writeBase(RowReader rows, long band) throws IOException {
+        int columns = tileColumns(0);
+        int width = columns * tileSize;
+        int area = tileSize * tileSize;
+        double[] row = new double[ncol];
+        for (int tr = 0; tr < tileRows(0); tr++) {
+            FloatBuffer tiles = channel.map(FileChannel.MapMode.READ_WRITE, offset[0] + tr * band, band)
+                    .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+            for (int r = 0; r < tileSize; r++) {
+                int i = tr * tileSize + r;
+                if (i < nrow) {
+                    rows.read(i, row);
+                }
+
+                for (int j = 0; j < width; j++) {
+                    float v = i < nrow && j < ncol ? (float) row[j] : Float.NaN;
+                    tiles.put((j / tileSize) * area + r * tileSize + j % tileSize, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes level k from level k - 1 tile by tile.
+     */
+    private void downsample(int k) throws IOException {
+        int half = tileSize / 2;
+        int area = tileSize * tileSize;
+        long bytes = (long) area * BYTES;
+        int rows = tileRows(k - 1);
+        int columns = tileColumns(k - 1);
+        for (int tr = 0; tr < tileRows(k); tr++) {
+            for (int tc = 0; tc < tileColumns(k); tc++) {
+                long position = offset[k] + ((long) tr * tileColumns(k) + tc) * bytes;
+                FloatBuffer tile = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes)
+                        .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+                for (int q = 0; q < 4; q++) {
+                    // The quadrant of tile covered by a tile of level below.
+                    int sr = 2 * tr + q / 2;
+                    int sc = 2 * tc + q % 2;
+                    int r0 = (q / 2) * half;
+                    int c0 = (q % 2) * half;
+                    FloatBuffer source = sr < rows && sc < columns ? tile(k - 1, sr, sc) : null;
+                    for (int r = 0; r < half; r++) {
+                        for (int c = 0; c < half; c++) {
+                            float v = Float.NaN;
+                            if (source != null) {
+                                int p = 2 * r * tileSize + 2 * c;
+                                v = aggregate(source.get(p), source.get(p + 1),
+                                        source.get(p + tileSize), source.get(p + tileSize + 1));
+                            }
+                            tile.put((r0 + r) * tileSize + c0 + c, v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the aggregate of 2 x 2 cells, ignoring NaN.
+     */
+    private float aggregate(float a, float b, float c, float d) {
+        if (aggregate == Aggregate.MAX) {
+            // Math.max propagates NaN, so compare explicitly.
+            float max = Float.NaN;
+            if (!(a <= max)) max = Float.isNaN(a) ? max : a;
+            if (!(b <= max)) max = Float.isNaN(b) ? max : b;
+            if (!(c <= max)) max = Float.isNaN(c) ? max : c;
+            if (!(d <= max)) max = Float.isNaN(d) ? max : d;
+            return max;
+        }
+
+        float sum = 0.0f;
+        int n = 0;
+        if (!Float.isNaN(a)) { sum += a; n++; }
+        if (!Float.isNaN(b)) { sum += b; n++; }
+        if (!Float.isNaN(c)) { sum += c; n++; }
+        if (!Float.isNaN(d)) { sum += d; n++; }
+        return n == 0 ? Float.NaN : sum / n;
+    }
+}
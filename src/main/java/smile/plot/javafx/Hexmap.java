@@ -18,16 +18,47 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
-import java.util.Arrays;
 import java.util.Optional;
 import smile.math.MathEx;
 
 /**
  * Hexmap is a variant of heat map by replacing rectangle cells with hexagon cells.
+ * The hexagons are laid out in offset coordinates, i.e. the odd rows are
+ * shifted right by half a cell, and their vertices are computed on the fly
+ * from the row and column instead of being stored per cell.
  * 
  * @author Haifeng Li
  */
 public class Hexmap extends Plot {
+    /**
+     * The vertical distance between the centers of rows.
+     */
+    private static final double ROW_HEIGHT = Math.sqrt(0.75);
+    /**
+     * The half width of hexagons.
+     */
+    private static final double HALF_WIDTH = Math.sqrt(0.75) / 2;
+    /**
+     * The x offsets of hexagon vertices from the center.
+     */
+    private static final double[] VERTEX_X = new double[6];
+    /**
+     * The y offsets of hexagon vertices from the center.
+     */
+    private static final double[] VERTEX_Y = new double[6];
+    /**
+     * The number of hexagons filled in a batch.
+     */
+    private static final int BATCH_SIZE = 4096;
+
+    static {
+        for (int r = 0; r < 6; r++) {
+            double a = Math.PI / 3.0 * r;
+            VERTEX_X[r] = Math.sin(a) / 2;
+            VERTEX_Y[r] = Math.cos(a) / 2;
+        }
+    }
+
     /** The lambda interface to retrieve the tooltip of cell. */
     public interface Tooltip {
         /** Gets the tooltip of cell at (i, j). */
@@ -42,10 +73,6 @@ public class Hexmap extends Plot {
      * Tooltip lambda.
      */
     private Tooltip tooltip;
-    /**
-     * The coordinates of hexagons for each cell in data matrix.
-     */
-    private double[][][][] hexagon;
     /**
      * The minimum of the data.
      */
@@ -74,98 +101,129 @@ public class Hexmap extends Plot {
         this.palette = palette;
         this.tooltip = tooltip;
 
-        double s = Math.sqrt(0.75);
-        hexagon = new double[z.length][z[0].length][6][2];
-        for (int i = 0; i < z.length; i++) {
-            for (int j = 0; j < z[i].length; j++) {
-                for (int r = 0; r < hexagon[i][j].length; r++) {
-                    double a = Math.PI / 3.0 * r;
-                    hexagon[i][j][r][0] = j + Math.sin(a)/2;
-                    if (i % 2 == 1) hexagon[i][j][r][0] += 0.5;
-                    hexagon[i][j][r][1] = (z.length-i)*s + Math.cos(a)/2;
-                }                
-            }
-        }
-        
         // In case of outliers, we use 1% and 99% quantiles as lower and
         // upper limits instead of min and max.
-        int n = z.length * z[0].length;
-        double[] values = new double[n];
-        int i = 0;
-        for (double[] zi : z) {
-            for (double zij : zi) {
-                if (!Double.isNaN(zij)) {
-                    values[i++] = zij;
-                }
-            }
-        }
-        
-        if (i > 0) {
-            Arrays.sort(values, 0, i);
-            min = values[(int) Math.round(0.01 * i)];
-            max = values[(int) Math.round(0.99 * (i-1))];
+        ColorRange range = ColorRange.of(z, ColorRange.Method.EXACT);
+        if (range.size() > 0) {
+            min = range.getLower();
+            max = range.getUpper();
             width = (max - min) / palette.length;
         }
     }
 
+    /**
+     * Sets the range of colors, e.g. the approximate or other quantiles
+     * of data computed by {@link ColorRange}.
+     */
+    public Hexmap setColorRange(ColorRange range) {
+        min = range.getLower();
+        max = range.getUpper();
+        width = (max - min) / palette.length;
+        return this;
+    }
+
     @Override
     public Optional<String> tooltip(double[] coord) {
         if (tooltip == null) return Optional.empty();
 
-        if (coord[0] < -0.5 || coord[0] > z[0].length || coord[1] < 0.36 || coord[1] > z.length * 0.87 + 0.5) {
-            return Optional.empty();
-        }
-    
-        int x = (int) (coord[0] + 0.5);
-        int y = (int) (z.length - (coord[1]-0.5) / 0.87);
-        for (int i = -3; i < 3; i++) {
-            for (int j = -3; j < 3; j++) {
-                int xi = x + i;
-                int yj = y + j;
-                if (xi >= 0 && xi < hexagon[0].length && yj >= 0 && yj < hexagon.length) {
-                    if (MathEx.contains(hexagon[yj][xi], coord)) {
-                        return Optional.of(tooltip.get(yj, xi));
-                    }
-                }
-            }
-        }
-
-        return Optional.empty();
+        int[] cell = locate(coord[0], coord[1]);
+        if (cell == null) return Optional.empty();
+        return Optional.of(tooltip.get(cell[0], cell[1]));
     }
 
-    @Override
-    public double[] getLowerBound() {
-        double[] bound = {-0.5, 0.36};
-        return bound;
+    /**
+     * Returns the cell whose hexagon contains a point in O(1). The point
+     * is between the centers of at most two rows, and in each row it may
+     * only be in the hexagon of nearest column.
+     * @param x the logical x coordinate.
+     * @param y the logical y coordinate.
+     * @return the row and column of cell, or null if the point is not
+     *         in any hexagon.
+     */
+    public int[] locate(double x, double y) {
+        int nrow = z.length;
+        int ncol = z[0].length;
+        double row = nrow - y / ROW_HEIGHT;
+        double half = 0.5 / ROW_HEIGHT;
+        int i0 = Math.max(0, (int) Math.ceil(row - half));
+        int i1 = Math.min(nrow - 1, (int) Math.floor(row + half));
+        for (int i = i0; i <= i1; i++) {
+            double cx = x - (i % 2 == 1 ? 0.5 : 0.0);
+            int j = (int) Math.round(cx);
+            if (j < 0 || j >= ncol) continue;
+
+            double dx = Math.abs(cx - j);
+            double dy = Math.abs(y - (nrow - i) * ROW_HEIGHT);
+            if (dx <= HALF_WIDTH && dx / Math.sqrt(3) + dy <= 0.5) {
+                return new int[]{i, j};
+            }
+        }
+        return null;
     }
 
     @Override
-    public double[] getUpperBound() {
-        double[] bound = {z[0].length, z.length * 0.87 + 0.5};
-        return bound;
+    protected double[][] computeBounds() {
+        return new double[][]{{-0.5, 0.36}, {z[0].length, z.length * 0.87 + 0.5}};
     }
 
     @Override
     public void paint(Graphics g) {
-        for (int i = 0; i < z.length; i++) {
-            for (int j = 0; j < z[i].length; j++) {
-                if (Double.isNaN(z[i][j])) {
-                    g.setColor(Color.WHITE);
-                } else {
-                    int k = (int) ((z[i][j] - min) / width);
-                    
-                    if (k < 0) {
-                        k = 0;
-                    }
-                    
-                    if (k >= palette.length) {
-                        k = palette.length - 1;
+        int nrow = z.length;
+        int ncol = z[0].length;
+        double[] lower = g.getLowerBound();
+        double[] upper = g.getUpperBound();
+
+        // The visible cells, grouped by color with a counting sort. The
+        // color index of NaN is palette.length.
+        int i0 = Math.max(0, (int) Math.floor(nrow - (upper[1] + 0.5) / ROW_HEIGHT));
+        int i1 = Math.min(nrow, (int) Math.ceil(nrow - (lower[1] - 0.5) / ROW_HEIGHT) + 1);
+        int j0 = Math.max(0, (int) Math.floor(lower[0] - 1.0));
+        int j1 = Math.min(ncol, (int) Math.ceil(upper[0] + 1.0));
+        if (i1 <= i0 || j1 <= j0) {
+            i1 = i0;
+            j1 = j0;
+        }
+
+        int w = j1 - j0;
+        int[] bucket = new int[palette.length + 2];
+        int[] colorOf = new int[(i1 - i0) * w];
+        for (int i = i0; i < i1; i++) {
+            double[] zi = z[i];
+            for (int j = j0, k = (i - i0) * w; j < j1; j++, k++) {
+                int c = color(zi[j]);
+                colorOf[k] = c;
+                bucket[c + 1]++;
+            }
+        }
+
+        for (int c = 1; c < bucket.length; c++) {
+            bucket[c] += bucket[c - 1];
+        }
+
+        int[] order = new int[bucket[bucket.length - 1]];
+        int[] next = bucket.clone();
+        for (int k = 0; k < order.length; k++) {
+            order[next[colorOf[k]]++] = k;
+        }
+
+        double[] vx = new double[6 * Math.min(BATCH_SIZE, Math.max(1, order.length))];
+        double[] vy = new double[vx.length];
+        for (int c = 0; c <= palette.length; c++) {
+            g.setColor(c < palette.length ? palette[c] : Color.WHITE);
+            for (int offset = bucket[c]; offset < bucket[c + 1]; offset += BATCH_SIZE) {
+                int n = Math.min(BATCH_SIZE, bucket[c + 1] - offset);
+                for (int h = 0; h < n; h++) {
+                    int k = order[offset + h];
+                    int i = i0 + k / w;
+                    int j = j0 + k % w;
+                    double cx = j + (i % 2 == 1 ? 0.5 : 0.0);
+                    double cy = (nrow - i) * ROW_HEIGHT;
+                    for (int r = 0; r < 6; r++) {
+                        vx[6 * h + r] = cx + VERTEX_X[r];
+                        vy[6 * h + r] = cy + VERTEX_Y[r];
                     }
-                    
-                    g.setColor(palette[k]);
                 }
-                
-                g.fillPolygon(hexagon[i][j]);
+                g.fillPolygons(vx, vy, 6, n);
             }
         }
 
@@ -203,6 +261,26 @@ public class Hexmap extends Plot {
         g.drawTextBaseRatio(String.valueOf(MathEx.round(min, decimal)), start,0.0, 0.0);
     }
 
+    /**
+     * Returns the palette index of cell value, or palette.length for NaN.
+     */
+    private int color(double z) {
+        if (Double.isNaN(z)) {
+            return palette.length;
+        }
+
+        int k = (int) ((z - min) / width);
+        if (k < 0) {
+            k = 0;
+        }
+
+        if (k >= palette.length) {
+            k = palette.length - 1;
+        }
+
+        return k;
+    }
+
     @Override
     public SmileFxCanvas canvas() {
         SmileFxCanvas canvas = new SmileFxCanvas(getLowerBound(), getUpperBound(), false);
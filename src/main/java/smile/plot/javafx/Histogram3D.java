@@ -18,7 +18,6 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
-import smile.math.MathEx;
 import smile.sort.QuickSort;
 
 /**
@@ -52,25 +51,6 @@ public class Histogram3D extends Plot {
     private double[][] bottomNE;
     private double[][] bottomSW;
     private double[][] bottomSE;
-    /**
-     * Z-values in camera coordinates.
-     */
-    private double[] zTopNW;
-    private double[] zTopNE;
-    private double[] zTopSW;
-    private double[] zTopSE;
-    private double[] zBottomNW;
-    private double[] zBottomNE;
-    private double[] zBottomSW;
-    private double[] zBottomSE;
-    /**
-     * Average z-values of each surface of bars.
-     */
-    private double[] z;
-    /**
-     * Index of surfaces in descending order of z-values.
-     */
-    private int[] order;
     /**
      * The maximum of the frequency.
      */
@@ -212,36 +192,18 @@ public class Histogram3D extends Plot {
             bottomSE[i][2] = 0;
         }
 
-        z = new double[6 * freq.length];
-        order = new int[6 * freq.length];
-        zTopNW = new double[freq.length];
-        zTopNE = new double[freq.length];
-        zTopSW = new double[freq.length];
-        zTopSE = new double[freq.length];
-        zBottomNW = new double[freq.length];
-        zBottomNE = new double[freq.length];
-        zBottomSW = new double[freq.length];
-        zBottomSE = new double[freq.length];
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] min = MathEx.colMin(data);
-        double[] bound = {min[0], min[1], 0};
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] max = MathEx.colMax(data);
-        double[] bound = {max[0], max[1], 0};
-        for (int i = 0; i < freq.length; i++) {
-            if (freq[i][2] > bound[2]) {
-                bound[2] = freq[i][2];
+    protected double[][] computeBounds() {
+        double[][] xy = Bounds.of(data);
+        double z = 0.0;
+        for (double[] f : freq) {
+            if (f[2] > z) {
+                z = f[2];
             }
         }
-
-        return bound;
+        return new double[][]{{xy[0][0], xy[0][1], 0}, {xy[1][0], xy[1][1], z}};
     }
 
     @Override
@@ -251,6 +213,14 @@ public class Histogram3D extends Plot {
         /**
          * Calculates z-axis values in camera coordinates.
          */
+        double[] zTopNW = new double[freq.length];
+        double[] zTopNE = new double[freq.length];
+        double[] zTopSW = new double[freq.length];
+        double[] zTopSE = new double[freq.length];
+        double[] zBottomNW = new double[freq.length];
+        double[] zBottomNE = new double[freq.length];
+        double[] zBottomSW = new double[freq.length];
+        double[] zBottomSE = new double[freq.length];
         for (int i = 0; i < freq.length; i++) {
             zTopNW[i] = p3d.z(topNW[i]);
             zTopNE[i] = p3d.z(topNE[i]);
@@ -267,6 +237,7 @@ public class Histogram3D extends Plot {
          * Note that this is actually just sum, which is sufficient
          * for us to sort them.
          */
+        double[] z = new double[6 * freq.length];
         for (int i = 0, k = 0; i < freq.length; i++, k += 6) {
             z[k] = (zTopNW[i] + zTopNE[i] + zTopSE[i] + zTopSW[i]);
             z[k + 1] = (zTopNW[i] + zTopNE[i] + zBottomNE[i] + zBottomNW[i]);
@@ -284,6 +255,7 @@ public class Histogram3D extends Plot {
          * obvious example of where the painter's algorithm falls short
          * is with intersecting surfaces.
          */
+        int[] order = new int[z.length];
         for (int i = 0; i < order.length; i++) {
             order[i] = i;
         }
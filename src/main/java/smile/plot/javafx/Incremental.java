@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+/**
+ * A shape whose elements are only appended, so that a cached layer of the
+ * shape can be updated by painting the new elements onto it instead of
+ * repainting all elements.
+ *
+ * @author Haifeng Li
+ */
+interface Incremental {
+    /**
+     * Returns the number of elements appended so far.
+     */
+    int size();
+
+    /**
+     * Paints the elements in [from, to).
+     */
+    void paint(Graphics g, int from, int to);
+}
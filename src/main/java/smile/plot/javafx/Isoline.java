@@ -57,6 +57,13 @@ public class Isoline extends Shape {
         return points.isEmpty();
     }
 
+    /**
+     * Returns the points along the contour line.
+     */
+    List<double[]> points() {
+        return points;
+    }
+
     /**
      * Add a point to the contour line.
      */
@@ -28,7 +28,9 @@ import smile.math.MathEx;
  */
 public class Label extends Shape {
     /** The default JLabel font may vary on different systems. */
-    private static Font DefaultFont = new Font("Arial",14);
+    private static final String DefaultFont = "Arial";
+    /** The size of default font. */
+    private static final double DefaultFontSize = 14;
 
     /**
      * The text of label.
@@ -53,10 +55,24 @@ public class Label extends Shape {
      */
     final double rotation;
     /**
-     * The font for rendering the text. Use the system default font if this is
+     * The font for rendering the text. Use the font of fontName if this is
      * null.
      */
     final Font font;
+    /**
+     * The name of font if font is null. Use the system default font if
+     * both are null.
+     */
+    final String fontName;
+    /**
+     * The size of font.
+     */
+    final double fontSize;
+    /**
+     * The priority of label when colliding labels are culled. Labels of
+     * higher priority are placed first.
+     */
+    double priority = 0.0;
 
     /**
      * Constructor.
@@ -69,19 +85,77 @@ public class Label extends Shape {
         this.verticalReference = verticalReference;
         this.rotation = rotation;
         this.font = font;
+        this.fontName = null;
+        this.fontSize = font == null ? 0.0 : font.getSize();
+    }
+
+    /**
+     * Constructor with the font of given name and size, which is created
+     * only if the graphics renders with the JavaFX toolkit.
+     */
+    Label(String text, double[] coordinates, double horizontalReference, double verticalReference, double rotation, String fontName, double fontSize, Color color) {
+        super(color);
+        this.text = text;
+        this.coordinates = coordinates;
+        this.horizontalReference = horizontalReference;
+        this.verticalReference = verticalReference;
+        this.rotation = rotation;
+        this.font = null;
+        this.fontName = fontName;
+        this.fontSize = fontSize;
+    }
+
+    /**
+     * Returns the priority of label when colliding labels are culled.
+     */
+    public double getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of label when colliding labels are culled. Labels
+     * of higher priority are placed first by TextPlot.
+     */
+    public Label setPriority(double priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Sets the font of label to the graphics.
+     */
+    void setFont(Graphics g) {
+        if (font != null) {
+            g.setFont(font);
+        } else if (fontName != null) {
+            g.setFont(fontName, fontSize);
+        }
+    }
+
+    /**
+     * Returns the width of text in the font of label.
+     */
+    double width(Graphics g) {
+        GraphicsContextInterface g2d = g.getGraphics();
+        g2d.save();
+        setFont(g);
+        double width = g.getStringWidth(text);
+        g2d.restore();
+        return width;
     }
 
     @Override
     public void paint(Graphics g) {
-        Font f = g.getFont();
-        if (font != null) g.setFont(font);
+        GraphicsContextInterface g2d = g.getGraphics();
+        g2d.save();
+        setFont(g);
 
-        Color c = g.getColor();
-        g.setColor(color);
-        g.drawText(text, coordinates, horizontalReference, verticalReference, rotation);
+        if (g.reserveText(text, coordinates, horizontalReference, verticalReference, rotation)) {
+            g.setColor(color);
+            g.drawText(text, coordinates, horizontalReference, verticalReference, rotation);
+        }
 
-        g.setColor(c);
-        if (font != null) g.setFont(f);
+        g2d.restore();
     }
 
     /**
@@ -120,6 +194,6 @@ public class Label extends Shape {
      * Creates a black label with system default font.
      */
     public static Label of(String text, double[] coordinates, double horizontalReference, double verticalReference, double rotation) {
-        return new Label(text, coordinates, horizontalReference, verticalReference, rotation, DefaultFont, Color.BLACK);
+        return new Label(text, coordinates, horizontalReference, verticalReference, rotation, DefaultFont, DefaultFontSize, Color.BLACK);
     }
 }
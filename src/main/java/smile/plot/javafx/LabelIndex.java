@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Arrays;
+
+/**
+ * A screen-space occupancy index of the boxes of placed labels. The screen
+ * is divided into a uniform grid of cells, and each cell lists the boxes
+ * overlapping it. A new box is placed only if it doesn't intersect any
+ * box placed before, which is checked against the boxes in the cells it
+ * covers. Since placed boxes don't overlap, each cell holds a few boxes
+ * and both the check and the insertion take constant time.
+ *
+ * @author Haifeng Li
+ */
+class LabelIndex {
+
+    /**
+     * The size of grid cell in pixels.
+     */
+    private static final int CELL = 32;
+    /**
+     * The number of grid columns.
+     */
+    private int columns;
+    /**
+     * The number of grid rows.
+     */
+    private int rows;
+    /**
+     * The width of screen.
+     */
+    private int width;
+    /**
+     * The height of screen.
+     */
+    private int height;
+    /**
+     * The box indices of each cell.
+     */
+    private int[][] cells = new int[0][];
+    /**
+     * The number of boxes in each cell.
+     */
+    private int[] counts = new int[0];
+    /**
+     * The boxes as (x0, y0, x1, y1) quadruples.
+     */
+    private double[] boxes = new double[256];
+    /**
+     * The number of boxes.
+     */
+    private int size;
+
+    /**
+     * Removes all boxes and resizes the grid to the screen.
+     */
+    void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        columns = Math.max(1, (width + CELL - 1) / CELL);
+        rows = Math.max(1, (height + CELL - 1) / CELL);
+        if (counts.length < columns * rows) {
+            counts = new int[columns * rows];
+            cells = new int[columns * rows][];
+        } else {
+            Arrays.fill(counts, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Places a box if it doesn't overlap any placed box.
+     * @return true if the box is placed, false if it collides with a
+     *         placed box or lies out of the screen.
+     */
+    boolean place(double x0, double y0, double x1, double y1) {
+        if (x1 < 0 || y1 < 0 || x0 > width || y0 > height) {
+            return false;
+        }
+
+        int c0 = Math.max(0, (int) (x0 / CELL));
+        int c1 = Math.min(columns - 1, (int) (x1 / CELL));
+        int r0 = Math.max(0, (int) (y0 / CELL));
+        int r1 = Math.min(rows - 1, (int) (y1 / CELL));
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                int[] list = cells[cell];
+                for (int k = 0; k < counts[cell]; k++) {
+                    int b = 4 * list[k];
+                    if (x0 < boxes[b + 2] && boxes[b] < x1 && y0 < boxes[b + 3] && boxes[b + 1] < y1) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        if (boxes.length < 4 * (size + 1)) {
+            boxes = Arrays.copyOf(boxes, 2 * boxes.length);
+        }
+        int b = 4 * size;
+        boxes[b] = x0;
+        boxes[b + 1] = y0;
+        boxes[b + 2] = x1;
+        boxes[b + 3] = y1;
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                if (cells[cell] == null) {
+                    cells[cell] = new int[4];
+                } else if (counts[cell] == cells[cell].length) {
+                    cells[cell] = Arrays.copyOf(cells[cell], 2 * counts[cell]);
+                }
+                cells[cell][counts[cell]++] = size;
+            }
+        }
+
+        size++;
+        return true;
+    }
+}
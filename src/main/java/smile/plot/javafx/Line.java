@@ -69,9 +69,14 @@ public class Line extends Shape {
      */
     private final FXStroke stroke;
     /**
-     * The end points of the line.
+     * The end points of the line, or null if the line is given as columns.
      */
     final double[][] points;
+    /**
+     * The coordinate columns of the end points, or null if the line is
+     * given as a matrix.
+     */
+    final DoubleColumns data;
     /**
      * The style of line.
      */
@@ -80,6 +85,20 @@ public class Line extends Shape {
      * The mark of points.
      */
     final char mark;
+    /**
+     * If true, long lines are decimated to the screen resolution at
+     * paint time.
+     */
+    private boolean isDecimated = true;
+    /**
+     * True if the x coordinates are in ascending order. Computed lazily.
+     */
+    private Boolean isSorted;
+    /**
+     * The min/max pyramid of points for decimation. Built on first use
+     * and reused across repaints and bound changes.
+     */
+    private volatile MinMaxPyramid pyramid;
 
     /**
      * Constructor.
@@ -109,8 +128,30 @@ public class Line extends Shape {
      * @param color the color of line.
      */
     public Line(double[][] points, Style style, char mark, Color color) {
+        this(points, null, style, mark, color);
+    }
+
+    /**
+     * Constructor. The end points are read from the columns at paint time
+     * without being copied, so that the columns may live off the heap
+     * or be memory mapped.
+     *
+     * @param data the x, y (and z) coordinate columns of points.
+     * @param style the style of line.
+     * @param mark the mark of points.
+     * @param color the color of line.
+     */
+    public Line(DoubleColumns data, Style style, char mark, Color color) {
+        this(null, data, style, mark, color);
+    }
+
+    /**
+     * Constructor.
+     */
+    private Line(double[][] points, DoubleColumns data, Style style, char mark, Color color) {
         super(color);
         this.points = points;
+        this.data = data;
         this.style = style;
         this.mark = mark;
 
@@ -141,17 +182,107 @@ public class Line extends Shape {
 
         FXStroke s = g.getStroke();
         g.setStroke(stroke);
-        g.drawLine(points);
+
+        int columns = columns(g);
+        if (columns > 0 && size() > 4 * (columns + 2)) {
+            MinMaxPyramid pyramid = this.pyramid;
+            if (pyramid == null) {
+                pyramid = points != null ? new MinMaxPyramid(points) : new MinMaxPyramid(data);
+                this.pyramid = pyramid;
+            }
+
+            int capacity = 4 * (columns + 2);
+            double[] lodX = g.scratch(0, capacity);
+            double[] lodY = g.scratch(1, capacity);
+            int n = pyramid.envelope(g.getLowerBound()[0], g.getUpperBound()[0], columns, lodX, lodY);
+            g.drawLine(lodX, lodY, n);
+        } else if (points != null) {
+            g.drawLine(points);
+        } else {
+            g.drawLine(data);
+        }
 
         if (mark != ' ') {
-            for (double[] point : points) {
-                g.drawPoint(mark, point);
+            if (points != null) {
+                g.drawPoints(mark, points);
+            } else {
+                g.drawPoints(mark, data);
             }
         }
 
         g.setStroke(s);
     }
 
+    /**
+     * Returns true if long lines are decimated at paint time.
+     */
+    public boolean isDecimated() {
+        return isDecimated;
+    }
+
+    /**
+     * Sets if long lines are decimated at paint time. If enabled, a 2D line
+     * whose x coordinates are in ascending order is reduced to at most four
+     * vertices per pixel column (the first, minimum, maximum and last points
+     * in the column) before stroking. The rendered shape is the same as the
+     * full line while the number of vertices is bounded by the screen width.
+     * The decimation is served by a min/max pyramid built once per line,
+     * so the cost of zoom and pan is proportional to the screen width
+     * rather than the number of points.
+     */
+    public Line setDecimated(boolean decimated) {
+        isDecimated = decimated;
+        return this;
+    }
+
+    /**
+     * Returns the number of pixel columns of plot area if the line can be
+     * decimated, or 0 otherwise.
+     */
+    private int columns(Graphics g) {
+        if (!isDecimated || !(g.projection instanceof Projection2D)) {
+            return 0;
+        }
+
+        if (isSorted == null) {
+            boolean sorted = true;
+            int n = size();
+            for (int i = 1; i < n && sorted; i++) {
+                sorted = x(i - 1) <= x(i);
+            }
+            isSorted = sorted;
+        }
+
+        if (!isSorted) {
+            return 0;
+        }
+
+        Projection p = g.projection;
+        return (int) Math.ceil(p.width * (1 - 2 * p.canvas.margin));
+    }
+
+    /**
+     * Returns the number of end points.
+     */
+    private int size() {
+        return points != null ? points.length : data.size();
+    }
+
+    /**
+     * Returns the x coordinate of i-th end point.
+     */
+    private double x(int i) {
+        return points != null ? points[i][0] : data.get(i, 0);
+    }
+
+    /**
+     * Returns the lower and upper bounds of end points. LinePlot keeps
+     * the bounds of its lines, so they are not cached here.
+     */
+    double[][] bounds() {
+        return points != null ? Bounds.of(points) : Bounds.of(data);
+    }
+
     /**
      * Returns a 2-dimensional array with the index as the x coordinate.
      *
@@ -19,7 +19,6 @@ package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
 import java.util.Optional;
-import smile.math.MathEx;
 
 /**
  * Line plot is a special scatter plot which connects points by straight lines.
@@ -65,35 +64,12 @@ public class LinePlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = MathEx.colMin(lines[0].points);
-        for (int k = 1; k < lines.length; k++) {
-            for (double[] x : lines[k].points) {
-                for (int i = 0; i < x.length; i++) {
-                    if (bound[i] > x[i]) {
-                        bound[i] = x[i];
-                    }
-                }
-            }
+    protected double[][] computeBounds() {
+        double[][] b = lines[0].bounds();
+        for (int i = 1; i < lines.length; i++) {
+            Bounds.merge(b, lines[i].bounds());
         }
-
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = MathEx.colMax(lines[0].points);
-        for (int k = 1; k < lines.length; k++) {
-            for (double[] x : lines[k].points) {
-                for (int i = 0; i < x.length; i++) {
-                    if (bound[i] < x[i]) {
-                        bound[i] = x[i];
-                    }
-                }
-            }
-        }
-
-        return bound;
+        return b;
     }
 
     @Override
@@ -131,6 +107,14 @@ public class LinePlot extends Plot {
         return new LinePlot(Line.of(data, style, color));
     }
 
+    /**
+     * Creates a line plot of columnar data, which may be off heap or
+     * memory mapped.
+     */
+    public static LinePlot of(DoubleColumns data, Line.Style style, Color color) {
+        return new LinePlot(new Line(data, style, ' ', color));
+    }
+
     /**
      * Creates a line plot.
      */
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javafx.scene.paint.Color;
+
+/**
+ * A point mark pre-rendered once per mark, colors and line width. A set
+ * of points is drawn by stamping the sprite at each point, which costs a
+ * blit per point instead of several path operations. The sprite is
+ * centered at whole pixels, so a mark may be shifted by up to half pixel.
+ *
+ * @author Haifeng Li
+ */
+class MarkerSprite {
+
+    /**
+     * The maximum number of sprites kept.
+     */
+    private static final int CAPACITY = 64;
+    /**
+     * The sprites of recently used marks.
+     */
+    private static final Map<Key, MarkerSprite> cache = new LinkedHashMap<Key, MarkerSprite>(128, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, MarkerSprite> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * The sprite image.
+     */
+    final SpriteSheet sheet;
+    /**
+     * The width and height of sprite.
+     */
+    final int size;
+    /**
+     * The offset of mark center in sprite.
+     */
+    final int center;
+
+    /**
+     * The key of sprite cache.
+     */
+    private static class Key {
+        final char mark;
+        final Color stroke;
+        final Color fill;
+        final double lineWidth;
+
+        Key(char mark, Color stroke, Color fill, double lineWidth) {
+            this.mark = mark;
+            this.stroke = stroke;
+            this.fill = fill;
+            this.lineWidth = lineWidth;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mark, stroke, fill, lineWidth);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mark == key.mark && lineWidth == key.lineWidth
+                    && stroke.equals(key.stroke) && fill.equals(key.fill);
+        }
+    }
+
+    /**
+     * Constructor. The geometry of marks is the same as
+     * {@link Graphics#drawPoint(char, double...)}.
+     */
+    private MarkerSprite(char mark, Color stroke, Color fill, double lineWidth) {
+        int size = 2;
+        int midSize = 3;
+        int bigSize = 4;
+
+        center = bigSize + (int) Math.ceil(lineWidth) + 1;
+        this.size = 2 * center;
+
+        BufferedImage image = new BufferedImage(this.size, this.size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.setStroke(new BasicStroke((float) lineWidth));
+        g.setColor(awtColor(stroke));
+
+        double x = center;
+        double y = center;
+        switch (mark) {
+            case '+':
+                g.draw(new Line2D.Double(x - size, y, x + size, y));
+                g.draw(new Line2D.Double(x, y - size, x, y + size));
+                break;
+
+            case '-':
+                g.draw(new Line2D.Double(x - size, y, x + size, y));
+                break;
+
+            case '|':
+                g.draw(new Line2D.Double(x, y - size, x, y + size));
+                break;
+
+            case 'x':
+                g.draw(new Line2D.Double(x - size, y - size, x + size, y + size));
+                g.draw(new Line2D.Double(x + size, y - size, x - size, y + size));
+                break;
+
+            case '*':
+                g.draw(new Line2D.Double(x - bigSize, y, x + bigSize, y));
+                g.draw(new Line2D.Double(x, y - bigSize, x, y + bigSize));
+                g.draw(new Line2D.Double(x - midSize, y - midSize, x + midSize, y + midSize));
+                g.draw(new Line2D.Double(x + midSize, y - midSize, x - midSize, y + midSize));
+                break;
+
+            case 'o':
+                g.draw(new Ellipse2D.Double(x - size, y - size, 2 * size, 2 * size));
+                break;
+
+            case 'O':
+                g.draw(new Ellipse2D.Double(x - bigSize, y - bigSize, 2 * bigSize, 2 * bigSize));
+                break;
+
+            case '@':
+                g.setColor(awtColor(fill));
+                g.fill(new Ellipse2D.Double(x - size, y - size, 2 * size, 2 * size));
+                break;
+
+            case '#':
+                g.setColor(awtColor(fill));
+                g.fill(new Ellipse2D.Double(x - bigSize, y - bigSize, 2 * bigSize, 2 * bigSize));
+                break;
+
+            case 's':
+                g.draw(new Rectangle2D.Double(x - size, y - size, 2 * size, 2 * size));
+                break;
+
+            case 'S':
+                g.draw(new Rectangle2D.Double(x - bigSize, y - bigSize, 2 * bigSize, 2 * bigSize));
+                break;
+
+            case 'q':
+                g.setColor(awtColor(fill));
+                g.fill(new Rectangle2D.Double(x - size, y - size, 2 * size, 2 * size));
+                break;
+
+            case 'Q':
+                g.setColor(awtColor(fill));
+                g.fill(new Rectangle2D.Double(x - bigSize, y - bigSize, 2 * bigSize, 2 * bigSize));
+                break;
+
+            default:
+                g.draw(new Rectangle2D.Double(x, y, 1, 1));
+                break;
+        }
+        g.dispose();
+
+        sheet = new SpriteSheet(image);
+    }
+
+    /**
+     * Converts a JavaFX color to Java2D.
+     */
+    private static java.awt.Color awtColor(Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), (float) color.getOpacity());
+    }
+
+    /**
+     * Returns the sprite of a mark.
+     * @param mark the mark of points.
+     * @param stroke the color of outlined marks.
+     * @param fill the color of solid marks.
+     * @param lineWidth the line width of outlined marks.
+     */
+    static MarkerSprite of(char mark, Color stroke, Color fill, double lineWidth) {
+        Key key = new Key(mark, stroke, fill, lineWidth);
+        synchronized (cache) {
+            MarkerSprite sprite = cache.get(key);
+            if (sprite == null) {
+                sprite = new MarkerSprite(mark, stroke, fill, lineWidth);
+                cache.put(key, sprite);
+            }
+            return sprite;
+        }
+    }
+
+    /**
+     * Stamps the mark centered at a point in the current coordinates
+     * of context.
+     */
+    void draw(GraphicsContextInterface g2d, double x, double y) {
+        g2d.drawSprite(sheet, 0, 0, size, size, Math.round(x) - center, Math.round(y) - center);
+    }
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+/**
+ * A multi-resolution min/max index over the points of a line whose x
+ * coordinates are in ascending order. The points are grouped in blocks
+ * and each level of the pyramid stores the indices of the minimum and
+ * maximum y of pairs of nodes in the level below, like a segment tree.
+ * The envelope of any index range is found in O(log n), so the envelope
+ * of N buckets over a x-axis range costs O(N log n) no matter how many
+ * points fall in the range.
+ *
+ * @author Haifeng Li
+ */
+class MinMaxPyramid {
+
+    /**
+     * The number of points in a leaf block.
+     */
+    private static final int BLOCK = 64;
+    /**
+     * The points of line, or null if the line is backed by columns.
+     */
+    private final double[][] points;
+    /**
+     * The columns of line, or null if the line is backed by points.
+     */
+    private final DoubleColumns columns;
+    /**
+     * The number of points.
+     */
+    private final int n;
+    /**
+     * The index of minimum y of each node on each level.
+     */
+    private final int[][] minIndex;
+    /**
+     * The index of maximum y of each node on each level.
+     */
+    private final int[][] maxIndex;
+
+    /**
+     * Constructor.
+     * @param points the points of line in ascending order of x coordinates.
+     */
+    public MinMaxPyramid(double[][] points) {
+        this(points, null, points.length);
+    }
+
+    /**
+     * Constructor.
+     * @param columns the x and y columns of line in ascending order of x.
+     */
+    public MinMaxPyramid(DoubleColumns columns) {
+        this(null, columns, columns.size());
+    }
+
+    /**
+     * Constructor.
+     */
+    private MinMaxPyramid(double[][] points, DoubleColumns columns, int n) {
+        this.points = points;
+        this.columns = columns;
+        this.n = n;
+
+        int size = (n + BLOCK - 1) / BLOCK;
+        int levels = 1;
+        for (int k = size; k > 1; k = (k + 1) / 2) {
+            levels++;
+        }
+
+        minIndex = new int[levels][];
+        maxIndex = new int[levels][];
+        minIndex[0] = new int[size];
+        maxIndex[0] = new int[size];
+        int[] result = new int[2];
+        for (int j = 0; j < size; j++) {
+            int begin = j * BLOCK;
+            scan(begin, Math.min(begin + BLOCK, n), result);
+            minIndex[0][j] = result[0];
+            maxIndex[0][j] = result[1];
+        }
+
+        for (int level = 1; level < levels; level++) {
+            int[] lowerMin = minIndex[level - 1];
+            int[] lowerMax = maxIndex[level - 1];
+            size = (lowerMin.length + 1) / 2;
+            minIndex[level] = new int[size];
+            maxIndex[level] = new int[size];
+            for (int j = 0; j < size; j++) {
+                result[0] = lowerMin[2 * j];
+                result[1] = lowerMax[2 * j];
+                if (2 * j + 1 < lowerMin.length) {
+                    merge(lowerMin[2 * j + 1], lowerMax[2 * j + 1], result);
+                }
+                minIndex[level][j] = result[0];
+                maxIndex[level][j] = result[1];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of points.
+     */
+    public int size() {
+        return n;
+    }
+
+    /** Returns the x coordinate of i-th point. */
+    private double x(int i) {
+        return points != null ? points[i][0] : columns.get(i, 0);
+    }
+
+    /** Returns the y coordinate of i-th point. */
+    private double y(int i) {
+        return points != null ? points[i][1] : columns.get(i, 1);
+    }
+
+    /**
+     * Computes the envelope of the line for the x-axis range [xmin, xmax]
+     * at given number of buckets. For each bucket, the first, minimum,
+     * maximum and last points are written in index order. The points before
+     * xmin and after xmax are summarized in one extra bucket on each side
+     * so that the lines entering the range are kept. The pyramid may be
+     * queried by several threads concurrently.
+     *
+     * @param xmin the lower bound of x-axis range.
+     * @param xmax the upper bound of x-axis range.
+     * @param buckets the number of buckets, e.g. pixel columns.
+     * @param x the output buffer of x coordinates with at least
+     *          4 * (buckets + 2) elements.
+     * @param y the output buffer of y coordinates with at least
+     *          4 * (buckets + 2) elements.
+     * @return the number of vertices written to the buffers.
+     */
+    public int envelope(double xmin, double xmax, int buckets, double[] x, double[] y) {
+        double width = (xmax - xmin) / buckets;
+        int[] result = new int[2];
+        int m = 0;
+        int begin = 0;
+        for (int c = 0; c <= buckets + 1; c++) {
+            int end = c <= buckets ? search(xmin + c * width, begin) : n;
+            if (end > begin) {
+                range(begin, end, result);
+                int min = result[0], max = result[1];
+                m = emit(begin, x, y, m);
+                if (min < max) {
+                    m = emit(min, x, y, m);
+                    m = emit(max, x, y, m);
+                } else {
+                    m = emit(max, x, y, m);
+                    m = emit(min, x, y, m);
+                }
+                m = emit(end - 1, x, y, m);
+            }
+            begin = end;
+        }
+
+        return m;
+    }
+
+    /**
+     * Returns the index of first point whose x is not less than the given
+     * value, searching from the given index.
+     */
+    private int search(double value, int from) {
+        int lo = from;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x(mid) < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Finds the indices of minimum and maximum y in [begin, end).
+     *
+     * @param result the output of minimum and maximum indices.
+     */
+    private void range(int begin, int end, int[] result) {
+        int l = (begin + BLOCK - 1) / BLOCK;
+        int r = end / BLOCK;
+        if (l >= r) {
+            scan(begin, end, result);
+            return;
+        }
+
+        scan(begin, l * BLOCK, result);
+        int lmin = result[0], lmax = result[1];
+        scan(r * BLOCK, end, result);
+        merge(lmin, lmax, result);
+
+        for (int level = 0; l < r; level++, l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                merge(minIndex[level][l], maxIndex[level][l], result);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                merge(minIndex[level][r], maxIndex[level][r], result);
+            }
+        }
+    }
+
+    /**
+     * Finds the indices of minimum and maximum y in [begin, end) by a
+     * linear scan. An empty range resets the result to -1.
+     */
+    private void scan(int begin, int end, int[] result) {
+        result[0] = -1;
+        result[1] = -1;
+        for (int i = begin; i < end; i++) {
+            merge(i, i, result);
+        }
+    }
+
+    /**
+     * Merges a node with given minimum and maximum indices into the result.
+     */
+    private void merge(int lo, int hi, int[] result) {
+        if (lo < 0) {
+            return;
+        }
+
+        if (result[0] < 0 || y(lo) < y(result[0])) {
+            result[0] = lo;
+        }
+        if (result[1] < 0 || y(hi) > y(result[1])) {
+            result[1] = hi;
+        }
+    }
+
+    /**
+     * Appends the i-th point to the buffers unless it is the same point as
+     * the last one appended.
+     */
+    private int emit(int i, double[] x, double[] y, int m) {
+        double xi = x(i);
+        double yi = y(i);
+        if (m > 0 && x[m - 1] == xi && y[m - 1] == yi) {
+            return m;
+        }
+
+        x[m] = xi;
+        y[m] = yi;
+        return m + 1;
+    }
+}
@@ -474,4 +474,25 @@ public class Palette {
 
         return new Color(r, g, b, alpha);
     }
+
+    /**
+     * Returns the non-premultiplied ARGB value of a color.
+     */
+    static int argb(Color c) {
+        return (int) Math.round(c.getOpacity() * 255) << 24
+                | (int) Math.round(c.getRed() * 255) << 16
+                | (int) Math.round(c.getGreen() * 255) << 8
+                | (int) Math.round(c.getBlue() * 255);
+    }
+
+    /**
+     * Returns the non-premultiplied ARGB values of colors.
+     */
+    static int[] argb(Color[] palette) {
+        int[] argb = new int[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            argb[i] = argb(palette[i]);
+        }
+        return argb;
+    }
 }
@@ -27,6 +27,11 @@ import javax.swing.JComponent;
  * @author Haifeng Li
  */
 public abstract class Plot extends Shape {
+    /**
+     * The lower and upper bounds of data. Computed lazily.
+     */
+    private volatile double[][] bounds;
+
     /** Constructor. */
     public Plot() {
         this(Color.BLACK);
@@ -38,9 +43,36 @@ public abstract class Plot extends Shape {
     }
 
     /** Returns the lower bound of data. */
-    public abstract double[] getLowerBound();
+    public double[] getLowerBound() {
+        return bounds()[0].clone();
+    }
+
     /** Returns the upper bound of data. */
-    public abstract double[] getUpperBound();
+    public double[] getUpperBound() {
+        return bounds()[1].clone();
+    }
+
+    /**
+     * Returns the lower and upper bounds of data, which are computed by
+     * computeBounds() on first use. The returned arrays should not be
+     * modified.
+     */
+    final double[][] bounds() {
+        double[][] b = bounds;
+        if (b == null) {
+            b = computeBounds();
+            bounds = b;
+        }
+        return b;
+    }
+
+    /**
+     * Computes the lower and upper bounds of data. It is called once by
+     * bounds() for plots of immutable data. Plots of data that change over
+     * time override getLowerBound() and getUpperBound() to call it anew.
+     * @return the lower and upper bounds in rows.
+     */
+    protected abstract double[][] computeBounds();
 
     /** Returns a canvas of the plot. */
     public SmileFxCanvas canvas() {
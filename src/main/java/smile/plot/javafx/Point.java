@@ -30,9 +30,14 @@ public class Point extends Shape {
     public static char[] MARKS = {'.', '+', '-', '|', '*', 'x', 'o', 'O', '@', '#', 's', 'S', 'q', 'Q'};
 
     /**
-     * The coordinate of points.
+     * The coordinate of points, or null if the points are given as columns.
      */
     final double[][] points;
+    /**
+     * The coordinate columns of points, or null if the points are given
+     * as a matrix.
+     */
+    final DoubleColumns columns;
     /**
      * The mark of points.
      */
@@ -64,18 +69,43 @@ public class Point extends Shape {
     public Point(double[][] points, char mark, Color color) {
         super(color);
         this.points = points;
+        this.columns = null;
+        this.mark = mark;
+    }
+
+    /**
+     * Constructor. The points are read from the columns at paint time
+     * without being copied, so that the columns may live off the heap
+     * or be memory mapped.
+     * @param columns the x, y (and z) coordinate columns of points.
+     * @param mark the mark of points.
+     * @param color the color of points.
+     */
+    public Point(DoubleColumns columns, char mark, Color color) {
+        super(color);
+        this.points = null;
+        this.columns = columns;
         this.mark = mark;
     }
 
     @Override
     public void paint(Graphics g) {
         g.setColor(color);
-
-        for (double[] point : points) {
-            g.drawPoint(mark, point);
+        if (points != null) {
+            g.drawPoints(mark, points);
+        } else {
+            g.drawPoints(mark, columns);
         }
     }
 
+    /**
+     * Returns the lower and upper bounds of points. ScatterPlot keeps
+     * the bounds of its points, so they are not cached here.
+     */
+    double[][] bounds() {
+        return points != null ? Bounds.of(points) : Bounds.of(columns);
+    }
+
     /**
      * Creates a Point with circle mark and black color.
      */
@@ -96,4 +126,18 @@ public class Point extends Shape {
     public static Point of (double[][] points, char mark) {
         return new Point(points, mark, Color.BLACK);
     }
+
+    /**
+     * Creates a Point with circle mark and black color.
+     */
+    public static Point of (DoubleColumns columns) {
+        return new Point(columns, 'o', Color.BLACK);
+    }
+
+    /**
+     * Creates a Point with circle mark.
+     */
+    public static Point of (DoubleColumns columns, Color color) {
+        return new Point(columns, 'o', color);
+    }
 }
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import javafx.scene.paint.Color;
+
+/**
+ * Renders points as a density image. The points are projected and binned
+ * into a count per pixel, and the counts are mapped through a palette into
+ * a single image. The points are split into a chunk per worker of the
+ * common fork-join pool, each of which counts into its own grid, and the
+ * grids are summed at the end. So the cost is linear in the number of
+ * points, scales with cores and doesn't depend on the mark of points.
+ *
+ * @author Haifeng Li
+ */
+class PointDensity {
+
+    /**
+     * The number of points projected at a time.
+     */
+    private static final int BATCH_SIZE = 4096;
+    /**
+     * The minimum number of points per chunk.
+     */
+    private static final int MIN_CHUNK = 65536;
+
+    /**
+     * The palette of density in non-premultiplied ARGB.
+     */
+    private final int[] palette;
+    /**
+     * The scaling of counts.
+     */
+    private final ScatterPlot.DensityScale scale;
+
+    /**
+     * Constructor.
+     * @param palette the color palette from low to high density.
+     * @param scale the scaling of counts.
+     */
+    PointDensity(Color[] palette, ScatterPlot.DensityScale scale) {
+        if (palette.length == 0) {
+            throw new IllegalArgumentException("Empty palette");
+        }
+
+        this.scale = scale;
+        this.palette = Palette.argb(palette);
+    }
+
+    /**
+     * Draws the density of points.
+     */
+    void paint(Graphics g, Point[] points) {
+        // Only the pixels of plot area are counted, as in Graphics.clip().
+        Projection projection = g.projection;
+        double margin = projection.canvas.margin;
+        int left = (int) (projection.width * margin);
+        int top = (int) (projection.height * margin);
+        int width = (int) (projection.width * (1 - 2 * margin));
+        int height = (int) (projection.height * (1 - 2 * margin));
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        int[] counts = new int[width * height];
+        for (Point point : points) {
+            int size = point.points != null ? point.points.length : point.columns.size();
+            int tasks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), size / MIN_CHUNK));
+            int chunk = (size + tasks - 1) / tasks;
+            int[] grid = IntStream.range(0, tasks).parallel()
+                    .mapToObj(k -> count(projection, point, k * chunk, Math.min(size, (k + 1) * chunk), left, top, width, height))
+                    .reduce(PointDensity::merge)
+                    .orElse(null);
+            if (grid != null) {
+                merge(counts, grid);
+            }
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        colorize(counts, pixels);
+        g.g2d.drawSprite(new SpriteSheet(image), 0, 0, width, height, left, top);
+    }
+
+    /**
+     * Counts the points in [from, to) per pixel of the plot area at
+     * (left, top) of given size.
+     */
+    private static int[] count(Projection projection, Point point, int from, int to, int left, int top, int width, int height) {
+        int[] grid = new int[width * height];
+        double[] xs = new double[BATCH_SIZE];
+        double[] ys = new double[BATCH_SIZE];
+        int d = projection.canvas.base.dimension;
+        double[][] buffer = point.columns != null ? new double[d][BATCH_SIZE] : null;
+
+        for (int offset = from; offset < to; offset += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, to - offset);
+            if (point.points != null) {
+                projection.project(point.points, offset, n, xs, ys);
+            } else {
+                for (int j = 0; j < d; j++) {
+                    point.columns.get(j, offset, n, buffer[j]);
+                }
+
+                if (d == 2) {
+                    projection.project(buffer[0], buffer[1], xs, ys, n);
+                } else {
+                    projection.project(buffer[0], buffer[1], buffer[2], xs, ys, n);
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                // The projection truncates NaN to pixel 0 unless in
+                // sub-pixel mode, so non-finite points are skipped first.
+                if (!isFinite(point, buffer, offset + i, i, d)) {
+                    continue;
+                }
+
+                double x = xs[i] - left, y = ys[i] - top;
+                if (x >= 0 && x < width && y >= 0 && y < height) {
+                    grid[(int) y * width + (int) x]++;
+                }
+            }
+        }
+
+        return grid;
+    }
+
+    /**
+     * Returns true if the coordinates of a point are finite.
+     * @param point the points.
+     * @param buffer the batch of columns, or null for row-major points.
+     * @param index the index of point.
+     * @param k the index of point in the batch.
+     * @param d the dimension of points.
+     */
+    private static boolean isFinite(Point point, double[][] buffer, int index, int k, int d) {
+        for (int j = 0; j < d; j++) {
+            double v = buffer != null ? buffer[j][k] : point.points[index][j];
+            if (!Double.isFinite(v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the counts of second grid to the first one.
+     */
+    private static int[] merge(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    /**
+     * Maps the counts to colors. Empty pixels are transparent.
+     */
+    private void colorize(int[] counts, int[] pixels) {
+        int max = 0;
+        int nonzero = 0;
+        for (int c : counts) {
+            if (c > 0) {
+                nonzero++;
+                if (c > max) max = c;
+            }
+        }
+
+        if (max == 0) {
+            return;
+        }
+
+        // The sorted counts of non-empty pixels for equalization.
+        int[] sorted = null;
+        if (scale == ScatterPlot.DensityScale.EQUALIZED) {
+            sorted = new int[nonzero];
+            int k = 0;
+            for (int c : counts) {
+                if (c > 0) sorted[k++] = c;
+            }
+            Arrays.sort(sorted);
+        }
+
+        double logMax = Math.log1p(max);
+        int n = palette.length;
+        for (int i = 0; i < counts.length; i++) {
+            int c = counts[i];
+            if (c == 0) {
+                continue;
+            }
+
+            double t;
+            switch (scale) {
+                case LOG:
+                    t = Math.log1p(c) / logMax;
+                    break;
+                case EQUALIZED:
+                    t = (double) upperBound(sorted, c) / sorted.length;
+                    break;
+                default:
+                    t = (double) c / max;
+                    break;
+            }
+
+            pixels[i] = palette[Math.min(n - 1, (int) (t * n))];
+        }
+    }
+
+    /**
+     * Returns the number of elements less than or equal to a value
+     * in a sorted array.
+     */
+    private static int upperBound(int[] a, int value) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
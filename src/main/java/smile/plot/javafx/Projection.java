@@ -32,9 +32,11 @@ abstract class Projection {
      */
     protected final SmileFxCanvas canvas;
     /**
-     * The base coordinates on Java2D screen.
+     * The base coordinates on Java2D screen. They keep their fractional
+     * part in sub-pixel mode so that the origin and scale of plot aren't
+     * quantized.
      */
-    private int[][] baseScreenCoords;
+    private double[][] baseScreenCoords;
     /**
      * The width of canvas in Java2D coordinate space.
      */
@@ -43,6 +45,23 @@ abstract class Projection {
      * The height of canvas in Java2D coordinate space.
      */
     protected int height = 1;
+    /**
+     * The logical coordinates of base origin, i.e. the offset of each axis.
+     */
+    private double[] origin;
+    /**
+     * The change of Java2D x coordinate per logical unit of each axis.
+     */
+    private double[] scaleX;
+    /**
+     * The change of Java2D y coordinate per logical unit of each axis.
+     */
+    private double[] scaleY;
+    /**
+     * If true, projected coordinates keep their fractional part instead
+     * of being truncated to whole pixels.
+     */
+    private boolean subpixel;
 
     /**
      * Constructor.
@@ -74,12 +93,21 @@ abstract class Projection {
     private void init() {
         Base base = canvas.base;
         double margin = canvas.margin;
-        baseScreenCoords = new int[base.baseCoords.length][2];
+        subpixel = canvas.isSubpixel();
+        baseScreenCoords = new double[base.baseCoords.length][2];
         for (int i = 0; i < base.dimension + 1; i++) {
             double[] ratio = baseCoordsScreenProjectionRatio(base.baseCoords[i]);
-            baseScreenCoords[i][0] = (int) (width * (margin + (1 - 2 * margin) * ratio[0]));
-            baseScreenCoords[i][1] = (int) (height - height * (margin + (1 - 2 * margin) * ratio[1]));
-            System.out.println("base " + i + " " + baseScreenCoords[i][0] + " " + baseScreenCoords[i][1] + " " + ratio[0] + " " + ratio[1]);
+            baseScreenCoords[i][0] = snap(width * (margin + (1 - 2 * margin) * ratio[0]));
+            baseScreenCoords[i][1] = snap(height - height * (margin + (1 - 2 * margin) * ratio[1]));
+        }
+
+        origin = base.baseCoords[0].clone();
+        scaleX = new double[base.dimension];
+        scaleY = new double[base.dimension];
+        for (int i = 0; i < base.dimension; i++) {
+            double range = base.baseCoords[i + 1][i] - base.baseCoords[0][i];
+            scaleX[i] = (baseScreenCoords[i + 1][0] - baseScreenCoords[0][0]) / range;
+            scaleY[i] = (baseScreenCoords[i + 1][1] - baseScreenCoords[0][1]) / range;
         }
     }
 
@@ -101,6 +129,216 @@ abstract class Projection {
         return new int[]{(int) sc[0], (int) sc[1]};
     }
 
+    /**
+     * Returns true if projected coordinates keep sub-pixel precision.
+     */
+    public boolean isSubpixel() {
+        return subpixel;
+    }
+
+    /**
+     * Returns the parameters that determine where logical coordinates land
+     * on the screen, i.e. the canvas size, the precision mode, the bounds
+     * and the screen coordinates of the base. Two projections with equal
+     * states render every shape identically.
+     */
+    double[] state() {
+        Base base = canvas.base;
+        int d = base.dimension;
+        double[] state = new double[3 + 2 * d + 2 * baseScreenCoords.length];
+        int k = 0;
+        state[k++] = width;
+        state[k++] = height;
+        state[k++] = subpixel ? 1 : 0;
+        for (int i = 0; i < d; i++) {
+            state[k++] = base.lowerBound[i];
+            state[k++] = base.upperBound[i];
+        }
+        for (double[] sc : baseScreenCoords) {
+            state[k++] = sc[0];
+            state[k++] = sc[1];
+        }
+        return state;
+    }
+
+    /**
+     * Truncates a Java2D coordinate or offset to whole pixels unless the
+     * projection is in sub-pixel mode.
+     */
+    double snap(double v) {
+        return subpixel ? v : (int) v;
+    }
+
+    /**
+     * Project logical coordinates to Java2D coordinates in double precision.
+     * The coordinates are truncated to whole pixels unless the projection
+     * is in sub-pixel mode.
+     *
+     * @param coord the logical coordinates.
+     * @param dst the output buffer of Java2D (x, y) coordinates.
+     */
+    public void screenProjection(double[] coord, double[] dst) {
+        int dim = origin.length;
+        double x = baseScreenCoords[0][0];
+        double y = baseScreenCoords[0][1];
+        for (int i = 0; i < dim; i++) {
+            double d = coord[i] - origin[i];
+            x += d * scaleX[i];
+            y += d * scaleY[i];
+        }
+        dst[0] = snap(x);
+        dst[1] = snap(y);
+    }
+
+    /**
+     * Project logical coordinates in base ratio to Java2D coordinates in
+     * double precision. The coordinates are truncated to whole pixels unless
+     * the projection is in sub-pixel mode.
+     *
+     * @param coord the logical coordinates in base ratio.
+     * @param dst the output buffer of Java2D (x, y) coordinates.
+     */
+    public void screenProjectionBaseRatio(double[] coord, double[] dst) {
+        int dim = origin.length;
+        double x = baseScreenCoords[0][0];
+        double y = baseScreenCoords[0][1];
+        for (int i = 0; i < dim; i++) {
+            x += coord[i] * (baseScreenCoords[i + 1][0] - baseScreenCoords[0][0]);
+            y += coord[i] * (baseScreenCoords[i + 1][1] - baseScreenCoords[0][1]);
+        }
+        dst[0] = snap(x);
+        dst[1] = snap(y);
+    }
+
+    /**
+     * Project a block of points in logical coordinates to Java2D coordinates.
+     * The results are written to the caller supplied buffers so that no
+     * garbage is created per point.
+     *
+     * @param coords the logical coordinates of points.
+     * @param offset the index of first point to project.
+     * @param n the number of points to project.
+     * @param dstX the output buffer of Java2D x coordinates.
+     * @param dstY the output buffer of Java2D y coordinates.
+     */
+    public void project(double[][] coords, int offset, int n, double[] dstX, double[] dstY) {
+        project(coords, offset, n, dstX, dstY, 0);
+    }
+
+    /**
+     * Project a block of points in logical coordinates to Java2D coordinates.
+     * The results are written to the caller supplied buffers starting at
+     * dstOffset so that several blocks can be packed into one buffer.
+     *
+     * @param coords the logical coordinates of points.
+     * @param offset the index of first point to project.
+     * @param n the number of points to project.
+     * @param dstX the output buffer of Java2D x coordinates.
+     * @param dstY the output buffer of Java2D y coordinates.
+     * @param dstOffset the index in output buffers of first projected point.
+     */
+    public void project(double[][] coords, int offset, int n, double[] dstX, double[] dstY, int dstOffset) {
+        int dim = origin.length;
+        double x0 = baseScreenCoords[0][0];
+        double y0 = baseScreenCoords[0][1];
+        for (int k = 0; k < n; k++) {
+            double[] coord = coords[offset + k];
+            double x = x0;
+            double y = y0;
+            for (int i = 0; i < dim; i++) {
+                double d = coord[i] - origin[i];
+                x += d * scaleX[i];
+                y += d * scaleY[i];
+            }
+            dstX[dstOffset + k] = snap(x);
+            dstY[dstOffset + k] = snap(y);
+        }
+    }
+
+    /**
+     * Project 2D points given as coordinate columns to Java2D coordinates.
+     *
+     * @param srcX the logical x coordinates.
+     * @param srcY the logical y coordinates.
+     * @param dstX the output buffer of Java2D x coordinates.
+     * @param dstY the output buffer of Java2D y coordinates.
+     * @param n the number of points to project.
+     */
+    public void project(double[] srcX, double[] srcY, double[] dstX, double[] dstY, int n) {
+        if (origin.length != 2) {
+            throw new IllegalArgumentException(String.format("2D coordinates for a %dD projection", origin.length));
+        }
+
+        double ox = origin[0], oy = origin[1];
+        double xx = scaleX[0], xy = scaleX[1];
+        double yx = scaleY[0], yy = scaleY[1];
+        double x0 = baseScreenCoords[0][0];
+        double y0 = baseScreenCoords[0][1];
+        for (int k = 0; k < n; k++) {
+            double dx = srcX[k] - ox;
+            double dy = srcY[k] - oy;
+            dstX[k] = snap(x0 + dx * xx + dy * xy);
+            dstY[k] = snap(y0 + dx * yx + dy * yy);
+        }
+    }
+
+    /**
+     * Project 3D points given as coordinate columns to Java2D coordinates.
+     *
+     * @param srcX the logical x coordinates.
+     * @param srcY the logical y coordinates.
+     * @param srcZ the logical z coordinates.
+     * @param dstX the output buffer of Java2D x coordinates.
+     * @param dstY the output buffer of Java2D y coordinates.
+     * @param n the number of points to project.
+     */
+    public void project(double[] srcX, double[] srcY, double[] srcZ, double[] dstX, double[] dstY, int n) {
+        if (origin.length != 3) {
+            throw new IllegalArgumentException(String.format("3D coordinates for a %dD projection", origin.length));
+        }
+
+        double ox = origin[0], oy = origin[1], oz = origin[2];
+        double xx = scaleX[0], xy = scaleX[1], xz = scaleX[2];
+        double yx = scaleY[0], yy = scaleY[1], yz = scaleY[2];
+        double x0 = baseScreenCoords[0][0];
+        double y0 = baseScreenCoords[0][1];
+        for (int k = 0; k < n; k++) {
+            double dx = srcX[k] - ox;
+            double dy = srcY[k] - oy;
+            double dz = srcZ[k] - oz;
+            dstX[k] = snap(x0 + dx * xx + dy * xy + dz * xz);
+            dstY[k] = snap(y0 + dx * yx + dy * yy + dz * yz);
+        }
+    }
+
+    /**
+     * Project a block of points in logical coordinates to Java2D coordinates.
+     * The points are packed in a flat array, i.e. (x0, y0, x1, y1, ...) for
+     * 2D and (x0, y0, z0, x1, y1, z1, ...) for 3D.
+     *
+     * @param coords the packed logical coordinates of points.
+     * @param offset the index of first point to project.
+     * @param n the number of points to project.
+     * @param dstX the output buffer of Java2D x coordinates.
+     * @param dstY the output buffer of Java2D y coordinates.
+     */
+    public void project(double[] coords, int offset, int n, double[] dstX, double[] dstY) {
+        int dim = origin.length;
+        double x0 = baseScreenCoords[0][0];
+        double y0 = baseScreenCoords[0][1];
+        for (int k = 0, p = offset * dim; k < n; k++) {
+            double x = x0;
+            double y = y0;
+            for (int i = 0; i < dim; i++, p++) {
+                double d = coords[p] - origin[i];
+                x += d * scaleX[i];
+                y += d * scaleY[i];
+            }
+            dstX[k] = snap(x);
+            dstY[k] = snap(y);
+        }
+    }
+
     /**
      * Project logical coordinates in base ratio to Java2D coordinates.
      */
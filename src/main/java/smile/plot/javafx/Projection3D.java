@@ -127,6 +127,17 @@ class Projection3D extends Projection {
         reset();
     }
 
+    /**
+     * Sets the view angle and zoom to those of another projection.
+     */
+    void setView(Projection3D other) {
+        this.theta = other.theta;
+        this.phi = other.phi;
+        this.factor = other.factor;
+        precompute();
+        reset();
+    }
+
     /**
      * Rotates the plot, i.e. change the view angle.
      * @param t the change add to &theta;
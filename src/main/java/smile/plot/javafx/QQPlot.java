@@ -18,7 +18,6 @@
 package smile.plot.javafx;
 
 import java.util.Arrays;
-import smile.math.MathEx;
 import smile.stat.distribution.Distribution;
 import smile.stat.distribution.DiscreteDistribution;
 import smile.stat.distribution.GaussianDistribution;
@@ -72,13 +71,8 @@ public class QQPlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        return MathEx.colMin(points);
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        return MathEx.colMax(points);
+    protected double[][] computeBounds() {
+        return Bounds.of(points);
     }
 
     /**
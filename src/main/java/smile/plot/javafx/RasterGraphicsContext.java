@@ -0,0 +1,1127 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Composite;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.geometry.VPos;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.effect.Effect;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontSmoothingType;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Affine;
+
+/**
+ * A software rasterizer of the JavaFX canvas API that draws into an ARGB
+ * int[] buffer with Java2D. Unlike the JavaFX GraphicsContext, it is not
+ * bound to the JavaFX application thread, so that plots can be rendered
+ * on worker threads and the finished buffer published to the screen in
+ * one step. Text is measured and drawn with Java2D fonts. Fonts set by
+ * name and size are kept as Java2D fonts only, and a JavaFX font is
+ * created on demand of getFont(), as it would start the JavaFX toolkit
+ * that needs a display. Paints other
+ * than solid colors are drawn with black, and effects and blend modes
+ * other than SRC_OVER are recorded but not applied.
+ *
+ * @author Haifeng Li
+ */
+public class RasterGraphicsContext implements GraphicsContextInterface {
+
+    /**
+     * The cached metrics of Java2D text with anti-aliasing.
+     */
+    private static final TextMetrics<java.awt.Font> METRICS = new TextMetrics<>((s, font) ->
+            font.getStringBounds(s, new FontRenderContext(null, true, false)).getWidth(), 8192);
+    /**
+     * The default font, which matches the size of JavaFX default font
+     * on Linux and macOS.
+     */
+    private static final java.awt.Font DEFAULT_FONT = new java.awt.Font(java.awt.Font.SANS_SERIF, java.awt.Font.PLAIN, 13);
+    /**
+     * The Java2D fonts of unit size by name.
+     */
+    private static final Map<String, java.awt.Font> FONTS = new ConcurrentHashMap<>();
+    /**
+     * The Java2D copies of JavaFX images drawn, weakly keyed by image.
+     */
+    private static final Map<Image, BufferedImage> IMAGES = new WeakHashMap<>();
+    /**
+     * The image of raster.
+     */
+    private final BufferedImage image;
+    /**
+     * The ARGB pixels of raster in row-major order.
+     */
+    private final int[] pixels;
+    /**
+     * The Java2D graphics of raster.
+     */
+    private final Graphics2D g;
+    /**
+     * The current path.
+     */
+    private Path2D.Double path = new Path2D.Double();
+    /**
+     * The current state.
+     */
+    private State state = new State();
+    /**
+     * The saved states.
+     */
+    private final Deque<State> stack = new ArrayDeque<>();
+
+    /**
+     * The attributes that are saved and restored as a whole.
+     */
+    private static class State implements Cloneable {
+        AffineTransform transform = new AffineTransform();
+        java.awt.Shape clip;
+        Paint fill = Color.BLACK;
+        Paint stroke = Color.BLACK;
+        double lineWidth = 1.0;
+        StrokeLineCap lineCap = StrokeLineCap.SQUARE;
+        StrokeLineJoin lineJoin = StrokeLineJoin.MITER;
+        double miterLimit = 10.0;
+        double[] lineDashes;
+        double lineDashOffset;
+        java.awt.Font awtFont = DEFAULT_FONT;
+        Font font;
+        TextAlignment textAlign = TextAlignment.LEFT;
+        VPos textBaseline = VPos.BASELINE;
+        FillRule fillRule = FillRule.NON_ZERO;
+        FontSmoothingType fontSmoothing = FontSmoothingType.GRAY;
+        double globalAlpha = 1.0;
+        BlendMode blendMode = BlendMode.SRC_OVER;
+        Effect effect;
+
+        @Override
+        public State clone() {
+            try {
+                State s = (State) super.clone();
+                s.transform = new AffineTransform(transform);
+                return s;
+            } catch (CloneNotSupportedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Constructor of a transparent raster.
+     * @param width the width of raster.
+     * @param height the height of raster.
+     */
+    public RasterGraphicsContext(int width, int height) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    /**
+     * Returns the width of raster.
+     */
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * Returns the height of raster.
+     */
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Returns the non-premultiplied ARGB pixels of raster in row-major
+     * order. The array is live, i.e. it reflects later drawing.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the raster as a Java2D image that shares the pixels.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Clears the raster to transparent and resets the state, so that
+     * the raster can be reused for another frame of the same size.
+     */
+    public void reset() {
+        Arrays.fill(pixels, 0);
+        path = new Path2D.Double();
+        state = new State();
+        stack.clear();
+    }
+
+    /**
+     * Releases the Java2D resources.
+     */
+    public void dispose() {
+        g.dispose();
+    }
+
+    /**
+     * Converts a JavaFX paint to Java2D color with global alpha.
+     */
+    private java.awt.Color color(Paint paint) {
+        if (paint instanceof Color) {
+            Color c = (Color) paint;
+            return new java.awt.Color((float) c.getRed(), (float) c.getGreen(), (float) c.getBlue(),
+                    (float) (c.getOpacity() * state.globalAlpha));
+        }
+        return new java.awt.Color(0F, 0F, 0F, (float) state.globalAlpha);
+    }
+
+    /**
+     * Converts a JavaFX font to Java2D font. The JavaFX font is only used
+     * as a descriptor of family, style and size. The generic family System
+     * is mapped to the logical font SansSerif.
+     */
+    static java.awt.Font font(Font font) {
+        String family = font.getFamily();
+        if ("System".equals(family)) {
+            family = java.awt.Font.SANS_SERIF;
+        }
+
+        String style = font.getStyle().toLowerCase();
+        int awtStyle = java.awt.Font.PLAIN;
+        if (style.contains("bold")) {
+            awtStyle |= java.awt.Font.BOLD;
+        }
+        if (style.contains("italic") || style.contains("oblique")) {
+            awtStyle |= java.awt.Font.ITALIC;
+        }
+        return new java.awt.Font(family, awtStyle, 1).deriveFont((float) font.getSize());
+    }
+
+    /**
+     * Returns the Java2D font of given name and size. A name that is
+     * not available is mapped to the logical font SansSerif.
+     */
+    static java.awt.Font font(String name, double size) {
+        java.awt.Font font = FONTS.computeIfAbsent(name, key -> {
+            java.awt.Font f = new java.awt.Font(key, java.awt.Font.PLAIN, 1);
+            if (java.awt.Font.DIALOG.equals(f.getFamily()) && !java.awt.Font.DIALOG.equalsIgnoreCase(key)) {
+                f = new java.awt.Font(java.awt.Font.SANS_SERIF, java.awt.Font.PLAIN, 1);
+            }
+            return f;
+        });
+        return font.deriveFont((float) size);
+    }
+
+    /**
+     * Converts a Java2D font to JavaFX font. Note that it starts the
+     * JavaFX toolkit.
+     */
+    private static Font font(java.awt.Font font) {
+        return Font.font(font.getFamily(), font.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                font.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR, font.getSize2D());
+    }
+
+    /**
+     * Returns the Java2D stroke of current state.
+     */
+    private BasicStroke basicStroke() {
+        int cap;
+        switch (state.lineCap) {
+            case BUTT: cap = BasicStroke.CAP_BUTT; break;
+            case ROUND: cap = BasicStroke.CAP_ROUND; break;
+            default: cap = BasicStroke.CAP_SQUARE; break;
+        }
+
+        int join;
+        switch (state.lineJoin) {
+            case BEVEL: join = BasicStroke.JOIN_BEVEL; break;
+            case ROUND: join = BasicStroke.JOIN_ROUND; break;
+            default: join = BasicStroke.JOIN_MITER; break;
+        }
+
+        float[] dashes = null;
+        if (state.lineDashes != null && state.lineDashes.length > 0) {
+            dashes = new float[state.lineDashes.length];
+            for (int i = 0; i < dashes.length; i++) {
+                dashes[i] = (float) state.lineDashes[i];
+            }
+        }
+
+        return new BasicStroke((float) state.lineWidth, cap, join,
+                (float) Math.max(1.0, state.miterLimit), dashes, (float) state.lineDashOffset);
+    }
+
+    /**
+     * Prepares Java2D graphics for filling.
+     */
+    private void prepareFill() {
+        g.setTransform(state.transform);
+        g.setClip(null);
+        if (state.clip != null) {
+            g.setTransform(new AffineTransform());
+            g.setClip(state.clip);
+            g.setTransform(state.transform);
+        }
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setColor(color(state.fill));
+    }
+
+    /**
+     * Prepares Java2D graphics for stroking.
+     */
+    private void prepareStroke() {
+        prepareFill();
+        g.setColor(color(state.stroke));
+        g.setStroke(basicStroke());
+    }
+
+    /**
+     * Transforms a point of user space to device space.
+     */
+    private Point2D device(double x, double y) {
+        return state.transform.transform(new Point2D.Double(x, y), null);
+    }
+
+    /**
+     * Appends an SVG path of user space to the current path. The commands
+     * M, L, H, V, C, Q and Z are supported in absolute and relative forms.
+     * @throws IllegalArgumentException if the path data is malformed or
+     *         has an unsupported command.
+     */
+    @Override
+    public void appendSVGPath(String svgpath) {
+        SvgPathParser parser = new SvgPathParser(svgpath);
+        // The current point and start of subpath in user space.
+        double x = 0.0, y = 0.0;
+        double x0 = 0.0, y0 = 0.0;
+        char command = 0;
+        while (parser.skipSpace()) {
+            char c = svgpath.charAt(parser.pos);
+            if (Character.isLetter(c)) {
+                command = c;
+                parser.pos++;
+            } else if (command == 0 || command == 'Z' || command == 'z') {
+                throw new IllegalArgumentException("Missing command in SVG path at " + parser.pos + ": " + svgpath);
+            } else if (command == 'M') {
+                // Coordinates after a move are implicit lines.
+                command = 'L';
+            } else if (command == 'm') {
+                command = 'l';
+            }
+
+            boolean relative = Character.isLowerCase(command);
+            double dx = relative ? x : 0.0;
+            double dy = relative ? y : 0.0;
+            switch (Character.toUpperCase(command)) {
+                case 'M':
+                    x = x0 = dx + parser.number();
+                    y = y0 = dy + parser.number();
+                    moveTo(x, y);
+                    break;
+                case 'L':
+                    x = dx + parser.number();
+                    y = dy + parser.number();
+                    lineTo(x, y);
+                    break;
+                case 'H':
+                    x = dx + parser.number();
+                    lineTo(x, y);
+                    break;
+                case 'V':
+                    y = dy + parser.number();
+                    lineTo(x, y);
+                    break;
+                case 'C': {
+                    if (path.getCurrentPoint() == null) moveTo(x, y);
+                    double x1 = dx + parser.number(), y1 = dy + parser.number();
+                    double x2 = dx + parser.number(), y2 = dy + parser.number();
+                    x = dx + parser.number();
+                    y = dy + parser.number();
+                    bezierCurveTo(x1, y1, x2, y2, x, y);
+                    break;
+                }
+                case 'Q': {
+                    if (path.getCurrentPoint() == null) moveTo(x, y);
+                    double x1 = dx + parser.number(), y1 = dy + parser.number();
+                    x = dx + parser.number();
+                    y = dy + parser.number();
+                    quadraticCurveTo(x1, y1, x, y);
+                    break;
+                }
+                case 'Z':
+                    closePath();
+                    x = x0;
+                    y = y0;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported SVG path command '" + command + "': " + svgpath);
+            }
+        }
+    }
+
+    /**
+     * A scanner of the numbers in SVG path data.
+     */
+    private static class SvgPathParser {
+        /** The path data. */
+        final String data;
+        /** The position of next character. */
+        int pos = 0;
+
+        SvgPathParser(String data) {
+            this.data = data;
+        }
+
+        /**
+         * Skips white space and commas. Returns false at the end of data.
+         */
+        boolean skipSpace() {
+            while (pos < data.length() && (Character.isWhitespace(data.charAt(pos)) || data.charAt(pos) == ',')) {
+                pos++;
+            }
+            return pos < data.length();
+        }
+
+        /**
+         * Returns the next number, e.g. "-1.5e3", ".5" or the "-2" of "1-2".
+         */
+        double number() {
+            if (!skipSpace()) {
+                throw new IllegalArgumentException("Missing number at the end of SVG path: " + data);
+            }
+
+            int start = pos;
+            if (data.charAt(pos) == '+' || data.charAt(pos) == '-') pos++;
+            boolean dot = false;
+            while (pos < data.length()) {
+                char c = data.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    pos++;
+                } else if (c == '.' && !dot) {
+                    dot = true;
+                    pos++;
+                } else if ((c == 'e' || c == 'E') && pos > start) {
+                    pos++;
+                    if (pos < data.length() && (data.charAt(pos) == '+' || data.charAt(pos) == '-')) pos++;
+                    while (pos < data.length() && Character.isDigit(data.charAt(pos))) pos++;
+                    break;
+                } else {
+                    break;
+                }
+            }
+
+            try {
+                return Double.parseDouble(data.substring(start, pos));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid number in SVG path at " + start + ": " + data, ex);
+            }
+        }
+    }
+
+    @Override
+    public void applyEffect(Effect e) {
+        // Effects are not rasterized.
+    }
+
+    @Override
+    public void arc(double centerX, double centerY, double radiusX, double radiusY, double startAngle, double length) {
+        java.awt.Shape arc = new Arc2D.Double(centerX - radiusX, centerY - radiusY, 2 * radiusX, 2 * radiusY,
+                startAngle, length, Arc2D.OPEN);
+        path.append(state.transform.createTransformedShape(arc), true);
+    }
+
+    @Override
+    public void arcTo(double x1, double y1, double x2, double y2, double radius) {
+        // Approximate the tangent arc by a quadratic curve through the corner.
+        Point2D p1 = device(x1, y1);
+        Point2D p2 = device(x2, y2);
+        if (path.getCurrentPoint() == null) {
+            path.moveTo(p1.getX(), p1.getY());
+        }
+        path.quadTo(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+    }
+
+    @Override
+    public void beginPath() {
+        path = new Path2D.Double();
+    }
+
+    @Override
+    public void bezierCurveTo(double xc1, double yc1, double xc2, double yc2, double x1, double y1) {
+        Point2D c1 = device(xc1, yc1);
+        Point2D c2 = device(xc2, yc2);
+        Point2D p = device(x1, y1);
+        path.curveTo(c1.getX(), c1.getY(), c2.getX(), c2.getY(), p.getX(), p.getY());
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        prepareFill();
+        Composite composite = g.getComposite();
+        g.setComposite(AlphaComposite.Clear);
+        g.fill(new Rectangle2D.Double(x, y, w, h));
+        g.setComposite(composite);
+    }
+
+    @Override
+    public void clip() {
+        java.awt.Shape shape = new Path2D.Double(path);
+        if (state.clip == null) {
+            state.clip = shape;
+        } else {
+            java.awt.geom.Area area = new java.awt.geom.Area(state.clip);
+            area.intersect(new java.awt.geom.Area(shape));
+            state.clip = area;
+        }
+    }
+
+    @Override
+    public void closePath() {
+        if (path.getCurrentPoint() != null) {
+            path.closePath();
+        }
+    }
+
+    /**
+     * Converts a JavaFX image to Java2D image. The conversions of loaded
+     * images are cached until the image is collected, while writable
+     * images may change and are converted on every call.
+     */
+    private static BufferedImage image(Image img) {
+        if (img instanceof WritableImage || img.getProgress() < 1.0) {
+            return convert(img);
+        }
+
+        synchronized (IMAGES) {
+            BufferedImage bi = IMAGES.get(img);
+            if (bi == null) {
+                bi = convert(img);
+                IMAGES.put(img, bi);
+            }
+            return bi;
+        }
+    }
+
+    /**
+     * Copies the pixels of a JavaFX image into a Java2D image.
+     */
+    private static BufferedImage convert(Image img) {
+        int w = (int) img.getWidth();
+        int h = (int) img.getHeight();
+        BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        PixelReader reader = img.getPixelReader();
+        int[] data = ((DataBufferInt) bi.getRaster().getDataBuffer()).getData();
+        reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), data, 0, w);
+        return bi;
+    }
+
+    @Override
+    public void drawImage(Image img, double x, double y) {
+        drawImage(img, x, y, img.getWidth(), img.getHeight());
+    }
+
+    @Override
+    public void drawImage(Image img, double x, double y, double w, double h) {
+        drawImage(img, 0, 0, img.getWidth(), img.getHeight(), x, y, w, h);
+    }
+
+    @Override
+    public void drawImage(Image img, double sx, double sy, double sw, double sh, double dx, double dy, double dw, double dh) {
+        prepareFill();
+        if (state.globalAlpha < 1.0) {
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) state.globalAlpha));
+        }
+        g.drawImage(image(img), (int) dx, (int) dy, (int) (dx + dw), (int) (dy + dh),
+                (int) sx, (int) sy, (int) (sx + sw), (int) (sy + sh), null);
+    }
+
+    @Override
+    public void drawSprite(SpriteSheet sheet, int sx, int sy, int w, int h, double dx, double dy) {
+        AffineTransform t = state.transform;
+        if ((t.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0 || state.clip != null || state.globalAlpha < 1.0) {
+            prepareFill();
+            if (state.globalAlpha < 1.0) {
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) state.globalAlpha));
+            }
+            g.drawImage(sheet.getBufferedImage(), (int) dx, (int) dy, (int) dx + w, (int) dy + h, sx, sy, sx + w, sy + h, null);
+            return;
+        }
+
+        // Translation only: blend the sprite into the pixels directly.
+        int x0 = (int) Math.round(dx + t.getTranslateX());
+        int y0 = (int) Math.round(dy + t.getTranslateY());
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int sheetWidth = sheet.getWidth();
+        int[] src = sheet.pixels;
+        int jmin = Math.max(0, -x0), jmax = Math.min(w, width - x0);
+        int imin = Math.max(0, -y0), imax = Math.min(h, height - y0);
+        for (int i = imin; i < imax; i++) {
+            int s = (sy + i) * sheetWidth + sx;
+            int d = (y0 + i) * width + x0;
+            for (int j = jmin; j < jmax; j++) {
+                int argb = src[s + j];
+                int a = argb >>> 24;
+                if (a == 255) {
+                    pixels[d + j] = argb;
+                } else if (a != 0) {
+                    pixels[d + j] = blend(argb, a, pixels[d + j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Composites a translucent non-premultiplied ARGB pixel over another.
+     */
+    private static int blend(int src, int sa, int dst) {
+        int da = dst >>> 24;
+        int fa = da * (255 - sa) / 255;
+        int oa = sa + fa;
+        if (oa == 0) {
+            return 0;
+        }
+
+        int r = (((src >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * fa) / oa;
+        int gr = (((src >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * fa) / oa;
+        int b = ((src & 0xFF) * sa + (dst & 0xFF) * fa) / oa;
+        return (oa << 24) | (r << 16) | (gr << 8) | b;
+    }
+
+    @Override
+    public void fill() {
+        prepareFill();
+        g.setTransform(new AffineTransform());
+        path.setWindingRule(state.fillRule == FillRule.EVEN_ODD ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+        g.fill(path);
+    }
+
+    /**
+     * Converts a JavaFX arc type to Java2D.
+     */
+    private static int arcType(ArcType closure) {
+        switch (closure) {
+            case CHORD: return Arc2D.CHORD;
+            case ROUND: return Arc2D.PIE;
+            default: return Arc2D.OPEN;
+        }
+    }
+
+    @Override
+    public void fillArc(double x, double y, double w, double h, double startAngle, double arcExtent, ArcType closure) {
+        prepareFill();
+        g.fill(new Arc2D.Double(x, y, w, h, startAngle, arcExtent, arcType(closure)));
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        prepareFill();
+        g.fill(new Ellipse2D.Double(x, y, w, h));
+    }
+
+    /**
+     * Returns the polygon or poly line of given vertices.
+     */
+    private static Path2D.Double polygon(double[] xPoints, double[] yPoints, int nPoints, boolean close) {
+        Path2D.Double polygon = new Path2D.Double(Path2D.WIND_NON_ZERO, nPoints + 1);
+        if (nPoints > 0) {
+            polygon.moveTo(xPoints[0], yPoints[0]);
+            for (int i = 1; i < nPoints; i++) {
+                polygon.lineTo(xPoints[i], yPoints[i]);
+            }
+            if (close) {
+                polygon.closePath();
+            }
+        }
+        return polygon;
+    }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        prepareFill();
+        Path2D.Double polygon = polygon(xPoints, yPoints, nPoints, true);
+        polygon.setWindingRule(state.fillRule == FillRule.EVEN_ODD ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+        g.fill(polygon);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        prepareFill();
+        g.fill(new Rectangle2D.Double(x, y, w, h));
+    }
+
+    @Override
+    public void fillRoundRect(double x, double y, double w, double h, double arcWidth, double arcHeight) {
+        prepareFill();
+        g.fill(new RoundRectangle2D.Double(x, y, w, h, arcWidth, arcHeight));
+    }
+
+    /**
+     * Draws a text at given anchor with the current alignment and baseline.
+     */
+    private void drawText(String text, double x, double y, boolean fill) {
+        java.awt.Font awtFont = state.awtFont;
+        g.setFont(awtFont);
+        FontMetrics metrics = g.getFontMetrics(awtFont);
+
+        switch (state.textAlign) {
+            case CENTER: x -= metrics.stringWidth(text) / 2.0; break;
+            case RIGHT: x -= metrics.stringWidth(text); break;
+            default: break;
+        }
+
+        switch (state.textBaseline) {
+            case TOP: y += metrics.getAscent(); break;
+            case CENTER: y += (metrics.getAscent() - metrics.getDescent()) / 2.0; break;
+            case BOTTOM: y -= metrics.getDescent(); break;
+            default: break;
+        }
+
+        if (fill) {
+            g.drawString(text, (float) x, (float) y);
+        } else {
+            java.awt.Shape outline = awtFont.createGlyphVector(g.getFontRenderContext(), text).getOutline((float) x, (float) y);
+            g.draw(outline);
+        }
+    }
+
+    @Override
+    public double stringWidth(String s, Font font) {
+        return METRICS.width(s, font(font));
+    }
+
+    @Override
+    public double stringWidth(String s) {
+        return METRICS.width(s, state.awtFont);
+    }
+
+    @Override
+    public double getFontSize() {
+        return state.awtFont.getSize2D();
+    }
+
+    @Override
+    public java.awt.Font getAwtFont() {
+        return state.awtFont;
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        prepareFill();
+        drawText(text, x, y, true);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y, double maxWidth) {
+        fillText(text, x, y);
+    }
+
+    @Override
+    public Effect getEffect(Effect e) {
+        return state.effect;
+    }
+
+    @Override
+    public Paint getFill() {
+        return state.fill;
+    }
+
+    @Override
+    public FillRule getFillRule() {
+        return state.fillRule;
+    }
+
+    @Override
+    public Font getFont() {
+        if (state.font == null) {
+            state.font = font(state.awtFont);
+        }
+        return state.font;
+    }
+
+    @Override
+    public FontSmoothingType getFontSmoothingType() {
+        return state.fontSmoothing;
+    }
+
+    @Override
+    public double getGlobalAlpha() {
+        return state.globalAlpha;
+    }
+
+    @Override
+    public BlendMode getGlobalBlendMode() {
+        return state.blendMode;
+    }
+
+    @Override
+    public StrokeLineCap getLineCap() {
+        return state.lineCap;
+    }
+
+    @Override
+    public double[] getLineDashes() {
+        return state.lineDashes == null ? null : state.lineDashes.clone();
+    }
+
+    @Override
+    public double getLineDashOffset() {
+        return state.lineDashOffset;
+    }
+
+    @Override
+    public StrokeLineJoin getLineJoin() {
+        return state.lineJoin;
+    }
+
+    @Override
+    public double getLineWidth() {
+        return state.lineWidth;
+    }
+
+    @Override
+    public double getMiterLimit() {
+        return state.miterLimit;
+    }
+
+    @Override
+    public Paint getStroke() {
+        return state.stroke;
+    }
+
+    @Override
+    public TextAlignment getTextAlign() {
+        return state.textAlign;
+    }
+
+    @Override
+    public VPos getTextBaseline() {
+        return state.textBaseline;
+    }
+
+    @Override
+    public Affine getTransform() {
+        return getTransform(null);
+    }
+
+    @Override
+    public Affine getTransform(Affine xform) {
+        AffineTransform t = state.transform;
+        if (xform == null) {
+            xform = new Affine();
+        }
+        xform.setToTransform(t.getScaleX(), t.getShearX(), t.getTranslateX(),
+                t.getShearY(), t.getScaleY(), t.getTranslateY());
+        return xform;
+    }
+
+    @Override
+    public boolean isPointInPath(double x, double y) {
+        return path.contains(device(x, y));
+    }
+
+    @Override
+    public void lineTo(double x1, double y1) {
+        Point2D p = device(x1, y1);
+        if (path.getCurrentPoint() == null) {
+            path.moveTo(p.getX(), p.getY());
+        } else {
+            path.lineTo(p.getX(), p.getY());
+        }
+    }
+
+    @Override
+    public void moveTo(double x0, double y0) {
+        Point2D p = device(x0, y0);
+        path.moveTo(p.getX(), p.getY());
+    }
+
+    @Override
+    public void quadraticCurveTo(double xc, double yc, double x1, double y1) {
+        Point2D c = device(xc, yc);
+        Point2D p = device(x1, y1);
+        path.quadTo(c.getX(), c.getY(), p.getX(), p.getY());
+    }
+
+    @Override
+    public void rect(double x, double y, double w, double h) {
+        path.append(state.transform.createTransformedShape(new Rectangle2D.Double(x, y, w, h)), false);
+    }
+
+    @Override
+    public void restore() {
+        if (!stack.isEmpty()) {
+            state = stack.pop();
+        }
+    }
+
+    @Override
+    public void rotate(double degrees) {
+        state.transform.rotate(Math.toRadians(degrees));
+    }
+
+    @Override
+    public void save() {
+        stack.push(state.clone());
+    }
+
+    @Override
+    public void scale(double x, double y) {
+        state.transform.scale(x, y);
+    }
+
+    @Override
+    public void setEffect(Effect e) {
+        state.effect = e;
+    }
+
+    @Override
+    public void setFill(Paint p) {
+        if (p != null) {
+            state.fill = p;
+        }
+    }
+
+    @Override
+    public void setFillRule(FillRule fillRule) {
+        if (fillRule != null) {
+            state.fillRule = fillRule;
+        }
+    }
+
+    @Override
+    public void setFont(Font f) {
+        if (f != null) {
+            state.font = f;
+            state.awtFont = font(f);
+        }
+    }
+
+    @Override
+    public void setFont(String name, double size) {
+        state.font = null;
+        state.awtFont = font(name, size);
+    }
+
+    @Override
+    public void setFontSmoothingType(FontSmoothingType fontsmoothing) {
+        if (fontsmoothing != null) {
+            state.fontSmoothing = fontsmoothing;
+        }
+    }
+
+    @Override
+    public void setGlobalAlpha(double alpha) {
+        state.globalAlpha = Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    @Override
+    public void setGlobalBlendMode(BlendMode op) {
+        if (op != null) {
+            state.blendMode = op;
+        }
+    }
+
+    @Override
+    public void setLineCap(StrokeLineCap cap) {
+        if (cap != null) {
+            state.lineCap = cap;
+        }
+    }
+
+    @Override
+    public void setLineDashes(double... dashes) {
+        state.lineDashes = dashes == null ? null : dashes.clone();
+    }
+
+    @Override
+    public void setLineDashOffset(double dashOffset) {
+        state.lineDashOffset = dashOffset;
+    }
+
+    @Override
+    public void setLineJoin(StrokeLineJoin join) {
+        if (join != null) {
+            state.lineJoin = join;
+        }
+    }
+
+    @Override
+    public void setLineWidth(double lw) {
+        if (lw > 0 && !Double.isInfinite(lw)) {
+            state.lineWidth = lw;
+        }
+    }
+
+    @Override
+    public void setMiterLimit(double ml) {
+        if (ml > 0 && !Double.isInfinite(ml)) {
+            state.miterLimit = ml;
+        }
+    }
+
+    @Override
+    public void setStroke(Paint p) {
+        if (p != null) {
+            state.stroke = p;
+        }
+    }
+
+    @Override
+    public void setTextAlign(TextAlignment align) {
+        if (align != null) {
+            state.textAlign = align;
+        }
+    }
+
+    @Override
+    public void setTextBaseline(VPos baseline) {
+        if (baseline != null) {
+            state.textBaseline = baseline;
+        }
+    }
+
+    @Override
+    public void setTransform(Affine xform) {
+        setTransform(xform.getMxx(), xform.getMyx(), xform.getMxy(), xform.getMyy(), xform.getTx(), xform.getTy());
+    }
+
+    @Override
+    public void setTransform(double mxx, double myx, double mxy, double myy, double mxt, double myt) {
+        state.transform = new AffineTransform(mxx, myx, mxy, myy, mxt, myt);
+    }
+
+    @Override
+    public void stroke() {
+        prepareStroke();
+        // The path is in device space, but the line width is in user space.
+        try {
+            java.awt.Shape user = state.transform.createInverse().createTransformedShape(path);
+            g.draw(user);
+        } catch (NoninvertibleTransformException ex) {
+            // A degenerate transform draws nothing.
+        }
+    }
+
+    @Override
+    public void strokeArc(double x, double y, double w, double h, double startAngle, double arcExtent, ArcType closure) {
+        prepareStroke();
+        g.draw(new Arc2D.Double(x, y, w, h, startAngle, arcExtent, arcType(closure)));
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        prepareStroke();
+        g.draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        prepareStroke();
+        g.draw(new Ellipse2D.Double(x, y, w, h));
+    }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        prepareStroke();
+        g.draw(polygon(xPoints, yPoints, nPoints, true));
+    }
+
+    @Override
+    public void strokePolyline(double[] xPoints, double[] yPoints, int nPoints) {
+        prepareStroke();
+        g.draw(polygon(xPoints, yPoints, nPoints, false));
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        prepareStroke();
+        g.draw(new Rectangle2D.Double(x, y, w, h));
+    }
+
+    @Override
+    public void strokeRoundRect(double x, double y, double w, double h, double arcWidth, double arcHeight) {
+        prepareStroke();
+        g.draw(new RoundRectangle2D.Double(x, y, w, h, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y) {
+        prepareStroke();
+        drawText(text, x, y, false);
+    }
+
+    @Override
+    public void strokeText(String text, double x, double y, double maxWidth) {
+        strokeText(text, x, y);
+    }
+
+    @Override
+    public void transform(Affine xform) {
+        transform(xform.getMxx(), xform.getMyx(), xform.getMxy(), xform.getMyy(), xform.getTx(), xform.getTy());
+    }
+
+    @Override
+    public void transform(double mxx, double myx, double mxy, double myy, double mxt, double myt) {
+        state.transform.concatenate(new AffineTransform(mxx, myx, mxy, myy, mxt, myt));
+    }
+
+    @Override
+    public void translate(double x, double y) {
+        state.transform.translate(x, y);
+    }
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.PixelFormat;
+
+/**
+ * Renders a plot canvas on a worker thread into an off-screen raster and
+ * publishes the finished frame to a JavaFX canvas with a single
+ * PixelWriter.setPixels call, so that heavy plots such as large heat maps
+ * and surfaces don't freeze the user interface. A frame is requested
+ * whenever the plot changes or the target is resized. The frame renders
+ * a snapshot of the bounds, axes and shapes taken at the request, so the
+ * plot may be changed while the frame is in progress. A newer request
+ * supersedes the frame in progress, which is abandoned before its next
+ * shape and never shown. As shapes keep no per-paint state, the canvas
+ * may be painted or exported by other means at the same time.
+ *
+ * @author Haifeng Li
+ */
+public class RasterRenderer {
+
+    /**
+     * The default worker pool of daemon threads.
+     */
+    private static ExecutorService defaultExecutor;
+
+    /**
+     * The plot canvas to render.
+     */
+    private final SmileFxCanvas canvas;
+    /**
+     * The JavaFX canvas to publish frames to.
+     */
+    private final Canvas target;
+    /**
+     * The worker pool.
+     */
+    private final ExecutorService executor;
+    /**
+     * The generation of latest requested frame. A frame is published only
+     * if it is still the latest when finished.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * The frame in progress.
+     */
+    private Future<?> frame;
+    /**
+     * Requests a frame on plot changes.
+     */
+    private final PropertyChangeListener plotListener = this::propertyChange;
+    /**
+     * Requests a frame on resize.
+     */
+    private final InvalidationListener sizeListener = observable -> render();
+
+    /**
+     * Constructor with a shared pool of worker threads.
+     * @param canvas the plot canvas to render.
+     * @param target the JavaFX canvas to show the frames.
+     */
+    public RasterRenderer(SmileFxCanvas canvas, Canvas target) {
+        this(canvas, target, defaultExecutor());
+    }
+
+    /**
+     * Constructor.
+     * @param canvas the plot canvas to render.
+     * @param target the JavaFX canvas to show the frames.
+     * @param executor the worker pool.
+     */
+    public RasterRenderer(SmileFxCanvas canvas, Canvas target, ExecutorService executor) {
+        this.canvas = canvas;
+        this.target = target;
+        this.executor = executor;
+
+        canvas.addPropertyChangeListener(plotListener);
+        target.widthProperty().addListener(sizeListener);
+        target.heightProperty().addListener(sizeListener);
+    }
+
+    /**
+     * Returns the shared pool of daemon worker threads.
+     */
+    private static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            int n = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            defaultExecutor = Executors.newFixedThreadPool(n, runnable -> {
+                Thread thread = new Thread(runnable, "smile-plot-raster");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Requests a new frame of the current size of target, cancelling the
+     * frame in progress. It should be called on the JavaFX application
+     * thread.
+     */
+    public void render() {
+        int width = (int) target.getWidth();
+        int height = (int) target.getHeight();
+        long id = generation.incrementAndGet();
+        cancelFrame();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // Snapshot the shapes, bounds and view on the application thread
+        // where they are modified. A stale frame is abandoned between shapes.
+        SmileFxCanvas snapshot = canvas.snapshot();
+        BooleanSupplier cancelled = () -> generation.get() != id;
+        frame = executor.submit(() -> {
+            RasterGraphicsContext raster = new RasterGraphicsContext(width, height);
+            boolean done;
+            try {
+                done = !cancelled.getAsBoolean()
+                        && snapshot.paint(snapshot.graphics, snapshot.shapes, raster, width, height, cancelled);
+            } finally {
+                raster.dispose();
+            }
+
+            if (!done) {
+                return;
+            }
+
+            Platform.runLater(() -> {
+                if (generation.get() == id && (int) target.getWidth() == width && (int) target.getHeight() == height) {
+                    target.getGraphicsContext2D().getPixelWriter().setPixels(0, 0, width, height,
+                            PixelFormat.getIntArgbInstance(), raster.getPixels(), 0, width);
+                }
+            });
+        });
+    }
+
+    /**
+     * Cancels the frame in progress.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        cancelFrame();
+    }
+
+    /**
+     * Cancels the frame in progress and stops listening to the plot
+     * and target.
+     */
+    public void dispose() {
+        cancel();
+        canvas.removePropertyChangeListener(plotListener);
+        target.widthProperty().removeListener(sizeListener);
+        target.heightProperty().removeListener(sizeListener);
+    }
+
+    /**
+     * Cancels the future of frame in progress.
+     */
+    private void cancelFrame() {
+        if (frame != null) {
+            frame.cancel(false);
+            frame = null;
+        }
+    }
+
+    /**
+     * Requests a frame on any change of plot.
+     */
+    private void propertyChange(PropertyChangeEvent event) {
+        render();
+    }
+}
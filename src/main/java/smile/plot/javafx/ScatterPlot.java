@@ -26,7 +26,6 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import smile.data.DataFrame;
-import smile.math.MathEx;
 
 /**
  * The data is displayed as a collection of points.
@@ -35,6 +34,22 @@ import smile.math.MathEx;
  */
 public class ScatterPlot extends Plot {
 
+    /**
+     * The scaling of point counts in density mode.
+     */
+    public enum DensityScale {
+        /** The color is proportional to the count. */
+        LINEAR,
+        /** The color is proportional to the logarithm of count. */
+        LOG,
+        /**
+         * Histogram equalization. The color is proportional to the rank
+         * of count among the non-empty pixels, so that the colors are
+         * evenly used.
+         */
+        EQUALIZED
+    }
+
     /**
      * The set of points which may have different marks and/or colors.
      */
@@ -43,6 +58,10 @@ public class ScatterPlot extends Plot {
      * The legends of each point group.
      */
     final Optional<Legend[]> legends;
+    /**
+     * The density renderer, or null if the points are drawn as marks.
+     */
+    private PointDensity density;
 
     /**
      * Constructor.
@@ -60,8 +79,43 @@ public class ScatterPlot extends Plot {
         this.legends = Optional.of(legends);
     }
 
+    /**
+     * Returns true if the points are drawn as a density image.
+     */
+    public boolean isDensity() {
+        return density != null;
+    }
+
+    /**
+     * Draws the points as a density image, which is suitable for millions
+     * of points where individual marks overplot each other. The points are
+     * binned into a count per pixel in parallel, and the counts are mapped
+     * through the palette in a single image. The marks and colors of
+     * points are ignored in this mode.
+     * @param palette the color palette from low to high density,
+     *                e.g. {@link Palette#jet(int)}.
+     * @param scale the scaling of counts.
+     */
+    public ScatterPlot setDensity(Color[] palette, DensityScale scale) {
+        density = new PointDensity(palette, scale);
+        return this;
+    }
+
+    /**
+     * Draws the points as marks, which is the default.
+     */
+    public ScatterPlot clearDensity() {
+        density = null;
+        return this;
+    }
+
     @Override
     public void paint(Graphics g) {
+        if (density != null) {
+            density.paint(g, points);
+            return;
+        }
+
         for (Point point : points) {
             point.paint(g);
         }
@@ -73,35 +127,12 @@ public class ScatterPlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = MathEx.colMin(points[0].points);
-        for (int k = 1; k < points.length; k++) {
-            for (double[] x : points[k].points) {
-                for (int i = 0; i < x.length; i++) {
-                    if (bound[i] > x[i]) {
-                        bound[i] = x[i];
-                    }
-                }
-            }
+    protected double[][] computeBounds() {
+        double[][] b = points[0].bounds();
+        for (int i = 1; i < points.length; i++) {
+            Bounds.merge(b, points[i].bounds());
         }
-
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = MathEx.colMax(points[0].points);
-        for (int k = 1; k < points.length; k++) {
-            for (double[] x : points[k].points) {
-                for (int i = 0; i < x.length; i++) {
-                    if (bound[i] < x[i]) {
-                        bound[i] = x[i];
-                    }
-                }
-            }
-        }
-
-        return bound;
+        return b;
     }
 
     /**
@@ -136,6 +167,15 @@ public class ScatterPlot extends Plot {
         return new ScatterPlot(new Point(points, mark, color));
     }
 
+    /**
+     * Create a scatter plot of columnar data, which may be off heap or
+     * memory mapped.
+     * @param columns the x, y (and z) coordinate columns of points.
+     */
+    public static ScatterPlot of(DoubleColumns columns, char mark, Color color) {
+        return new ScatterPlot(new Point(columns, mark, color));
+    }
+
     /**
      * Creates a scatter plot of multiple groups of data.
      * @param x the data points. The elements should be of dimension 2 or 3.
@@ -104,15 +104,8 @@ public class ScreePlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = {1, 0.0};
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
+    protected double[][] computeBounds() {
         int n = pca.getVarianceProportion().length;
-        double[] bound = {n, 1.0};
-        return bound;
+        return new double[][]{{1, 0.0}, {n, 1.0}};
     }
 }
@@ -20,12 +20,23 @@ package smile.plot.javafx;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import javafx.application.Platform;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
-import javafx.scene.text.Text;
+import javax.imageio.ImageIO;
 
 /**
  * Canvas for mathematical plots.
@@ -39,9 +50,13 @@ public class SmileFxCanvas {
      */
     private static final double DEFAULT_MARGIN = 0.15;
     /**
-     * The default font for rendering the title.
+     * The name of default font for rendering the title.
      */
-    private static final Font DEFAULT_TITLE_FONT = new Font("Arial", 16);
+    private static final String DEFAULT_TITLE_FONT = "Arial";
+    /**
+     * The size of default font for rendering the title.
+     */
+    private static final double DEFAULT_TITLE_FONT_SIZE = 16;
     /**
      * The default color for rendering the title.
      */
@@ -75,13 +90,58 @@ public class SmileFxCanvas {
      */
     private String title;
     /**
-     * The font for rendering the title.
+     * The font for rendering the title. Use the default font if this is
+     * null, which is created only on demand, as a JavaFX font starts the
+     * JavaFX toolkit.
      */
-    private Font titleFont = DEFAULT_TITLE_FONT;
+    private Font titleFont;
     /**
      * The color for rendering the title.
      */
     private Color titleColor = DEFAULT_TITLE_COLOR;
+    /**
+     * If true, shapes are projected to the screen in double precision
+     * instead of being truncated to whole pixels.
+     */
+    private boolean subpixel = false;
+    /**
+     * If true, text is stamped from glyph atlases instead of being laid
+     * out per label.
+     */
+    private boolean glyphAtlas = false;
+    /**
+     * If true, point marks are stamped from pre-rendered sprites.
+     */
+    private boolean markerSprites = false;
+    /**
+     * If true, labels colliding with labels placed before are skipped.
+     */
+    private boolean labelCulling = false;
+    /**
+     * If true, the axes and each shape are rendered into cached layers
+     * that are composited on repaint.
+     */
+    private boolean layered = false;
+    /**
+     * The cached layer of each shape in layered mode.
+     */
+    private final Map<Shape, WritableImage> layers = new IdentityHashMap<>();
+    /**
+     * The number of elements of each incremental shape in its layer.
+     */
+    private final Map<Shape, Integer> layerSizes = new IdentityHashMap<>();
+    /**
+     * The cached layer of axes and grid in layered mode.
+     */
+    private WritableImage axisLayer;
+    /**
+     * The projection state that the cached layers were rendered with.
+     */
+    private double[] layerState;
+    /**
+     * The off-screen canvas to render layers.
+     */
+    private Canvas layerCanvas;
     /**
      * Notify Swing listeners when a property changes.
      */
@@ -95,7 +155,13 @@ public class SmileFxCanvas {
 
         @Override
         public void firePropertyChange(PropertyChangeEvent event) {
-            if (Platform.isFxApplicationThread()) {
+            // Checks the thread only if anyone listens, as it starts
+            // the JavaFX toolkit, e.g. when the canvas is only exported.
+            boolean invalidate = layered || "layered".equals(event.getPropertyName());
+            if ((invalidate || hasListeners(event.getPropertyName())) && Platform.isFxApplicationThread()) {
+                if (invalidate) {
+                    invalidateLayers(event);
+                }
                 super.firePropertyChange(event);
             }
         }
@@ -116,6 +182,44 @@ public class SmileFxCanvas {
         initGraphics();
     }
 
+    /**
+     * Copy constructor of a snapshot, which shares the shapes but copies
+     * the base, axes, view and settings.
+     */
+    private SmileFxCanvas(SmileFxCanvas canvas) {
+        base = new Base(canvas.base);
+        axis = new Axis[canvas.axis.length];
+        for (int i = 0; i < axis.length; i++) {
+            axis[i] = new Axis(canvas.axis[i], base);
+        }
+
+        shapes = new ArrayList<>(canvas.shapes);
+        margin = canvas.margin;
+        isLegendVisible = canvas.isLegendVisible;
+        title = canvas.title;
+        titleFont = canvas.titleFont;
+        titleColor = canvas.titleColor;
+        subpixel = canvas.subpixel;
+        glyphAtlas = canvas.glyphAtlas;
+        markerSprites = canvas.markerSprites;
+        labelCulling = canvas.labelCulling;
+
+        initGraphics();
+        if (graphics.projection instanceof Projection3D) {
+            ((Projection3D) graphics.projection).setView((Projection3D) canvas.graphics.projection);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the canvas to render on a worker thread. It
+     * isn't affected by later changes of bounds, axes or shapes on the
+     * JavaFX application thread. It should be taken on the thread that
+     * modifies the canvas.
+     */
+    SmileFxCanvas snapshot() {
+        return new SmileFxCanvas(this);
+    }
+
     /**
      * Add a PropertyChangeListener to the listener list. The listener is
      * registered for all properties. The same listener object may be added more
@@ -146,17 +250,49 @@ public class SmileFxCanvas {
     }
 
     /**
-     * Exports the plot to an image.
+     * Exports the plot to an image. The plot is rendered by a software
+     * rasterizer on the calling thread, which doesn't require the JavaFX
+     * application thread or a display, e.g. on servers with
+     * -Djava.awt.headless=true. The default fonts are created as Java2D
+     * fonts only, but a JavaFX font, e.g. of setTitleFont() or a label,
+     * starts the JavaFX toolkit. The canvas may be exported from several
+     * threads, but not concurrently with its modification.
      *
      * @param width the width of image.
      * @param height the height of image.
      */
-//    public BufferedImage toBufferedImage(int width, int height) {
-//        BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-//        Graphics2D g2d = bi.createGraphics();
-//        paint(g2d, width, height);
-//        return bi;
-//    }
+    public BufferedImage toImage(int width, int height) {
+        RasterGraphicsContext raster = new RasterGraphicsContext(width, height);
+        try {
+            render(raster);
+        } finally {
+            raster.dispose();
+        }
+        return raster.getImage();
+    }
+
+    /**
+     * Renders the plot into a raster of any size with a new Graphics
+     * object, so that the renders don't share projection state or the
+     * scratch buffers of shapes. Renders of the same canvas may run
+     * concurrently.
+     */
+    void render(RasterGraphicsContext raster) {
+        Graphics g = newGraphics();
+        paint(g, new ArrayList<>(shapes), raster, raster.getWidth(), raster.getHeight());
+    }
+
+    /**
+     * Exports the plot as PNG. See {@link #toImage(int, int)}.
+     *
+     * @param out the output stream, which is not closed.
+     * @param width the width of image.
+     * @param height the height of image.
+     */
+    public void writePng(OutputStream out, int width, int height) throws IOException {
+        ImageIO.write(toImage(width, height), "png", out);
+    }
+
     /**
      * Initialize the Graphics object.
      */
@@ -168,6 +304,21 @@ public class SmileFxCanvas {
         }
     }
 
+    /**
+     * Returns a new Graphics object with its own projection, which has
+     * the same view as the canvas. Rendering with it doesn't interfere
+     * with the painting on the JavaFX application thread.
+     */
+    Graphics newGraphics() {
+        if (base.dimension == 2) {
+            return new Graphics(new Projection2D(this));
+        }
+
+        Projection3D projection = new Projection3D(this);
+        projection.setView((Projection3D) graphics.projection);
+        return new Graphics(projection);
+    }
+
     /**
      * Initialize a coordinate base.
      */
@@ -230,6 +381,169 @@ public class SmileFxCanvas {
         return this;
     }
 
+    /**
+     * Returns true if shapes are projected to the screen with sub-pixel
+     * precision.
+     */
+    public boolean isSubpixel() {
+        return subpixel;
+    }
+
+    /**
+     * Sets if shapes are projected to the screen with sub-pixel precision.
+     * By default, screen coordinates are truncated to whole pixels, which
+     * gives crisp lines at normal resolution. The sub-pixel mode keeps the
+     * coordinates in double precision end to end, which is more accurate
+     * for HiDPI screens and scaled exports. It takes effect on next paint.
+     */
+    public SmileFxCanvas setSubpixel(boolean subpixel) {
+        PropertyChangeEvent event = new PropertyChangeEvent(this, "subpixel", this.subpixel, subpixel);
+        this.subpixel = subpixel;
+        pcs.firePropertyChange(event);
+        return this;
+    }
+
+    /**
+     * Returns true if text is drawn from glyph atlases.
+     */
+    public boolean isGlyphAtlas() {
+        return glyphAtlas;
+    }
+
+    /**
+     * Sets if text is drawn from glyph atlases. In this mode, the Latin-1
+     * glyphs of each font and color are rasterized once into an atlas
+     * image, and labels are drawn by stamping the glyphs with drawImage
+     * (or pixel copies on a raster backend), which is much faster for
+     * plots with many labels, e.g. a TextPlot of 100k points. Rotated
+     * labels such as axis labels are supported. Glyphs are placed at whole
+     * pixels, so the spacing may slightly differ from regular text.
+     */
+    public SmileFxCanvas setGlyphAtlas(boolean glyphAtlas) {
+        PropertyChangeEvent event = new PropertyChangeEvent(this, "glyphAtlas", this.glyphAtlas, glyphAtlas);
+        this.glyphAtlas = glyphAtlas;
+        pcs.firePropertyChange(event);
+        return this;
+    }
+
+    /**
+     * Returns true if point marks are stamped from pre-rendered sprites.
+     */
+    public boolean isMarkerSprites() {
+        return markerSprites;
+    }
+
+    /**
+     * Sets if point marks are stamped from pre-rendered sprites. In this
+     * mode, each mark is rendered once per color and line width into a
+     * small image, which is stamped at every point with drawImage (or
+     * pixel copies on a raster backend). This replaces the several path
+     * operations per point and is much faster for scatter plots of many
+     * points. Marks are centered at whole pixels.
+     */
+    public SmileFxCanvas setMarkerSprites(boolean markerSprites) {
+        PropertyChangeEvent event = new PropertyChangeEvent(this, "markerSprites", this.markerSprites, markerSprites);
+        this.markerSprites = markerSprites;
+        pcs.firePropertyChange(event);
+        return this;
+    }
+
+    /**
+     * Returns true if colliding labels are skipped.
+     */
+    public boolean isLabelCulling() {
+        return labelCulling;
+    }
+
+    /**
+     * Sets if colliding labels are skipped. If enabled, the screen boxes of
+     * labels drawn by Label and Isoline shapes are recorded in a grid
+     * index during a paint, and a label overlapping a label drawn before
+     * by any shape or axis is skipped. In the layered mode, labels are
+     * culled within each layer only, as the layers are cached and rendered
+     * separately. TextPlot draws its labels in the order of priority, so
+     * that important labels win. The rendering cost is then bounded by the
+     * labels that fit on the screen rather than the number of labels.
+     */
+    public SmileFxCanvas setLabelCulling(boolean labelCulling) {
+        PropertyChangeEvent event = new PropertyChangeEvent(this, "labelCulling", this.labelCulling, labelCulling);
+        this.labelCulling = labelCulling;
+        pcs.firePropertyChange(event);
+        return this;
+    }
+
+    /**
+     * Returns true if the canvas is rendered in cached layers.
+     */
+    public boolean isLayered() {
+        return layered;
+    }
+
+    /**
+     * Sets if the canvas is rendered in cached layers. In layered mode,
+     * the axes and each shape are rasterized once into their own
+     * transparent image, and a repaint only composites the images. A layer
+     * is rendered again only if its shape is new, or the bounds, margin,
+     * canvas size or view changed. For example, adding a trend line to a
+     * scatter plot of millions of points renders only the line. Each layer
+     * takes 4 bytes per pixel of the canvas. Shapes or axes modified in
+     * place should be followed by {@link #invalidate(Shape)} or
+     * {@link #invalidate()}. The layer of an appendable series such as
+     * {@link StreamingScatter} is updated by painting only the new points
+     * onto it. Layers can only be rendered on the JavaFX application thread.
+     */
+    public SmileFxCanvas setLayered(boolean layered) {
+        PropertyChangeEvent event = new PropertyChangeEvent(this, "layered", this.layered, layered);
+        this.layered = layered;
+        pcs.firePropertyChange(event);
+        return this;
+    }
+
+    /**
+     * Drops all cached layers so that they are rendered again on next paint.
+     */
+    public void invalidate() {
+        layers.clear();
+        axisLayer = null;
+        layerState = null;
+    }
+
+    /**
+     * Drops the cached layer of a shape so that it is rendered again
+     * on next paint.
+     */
+    public void invalidate(Shape shape) {
+        layers.remove(shape);
+    }
+
+    /**
+     * Updates the cached layers on property changes.
+     */
+    private void invalidateLayers(PropertyChangeEvent event) {
+        switch (event.getPropertyName()) {
+            case "removeShape":
+            case "removePlot":
+                layers.remove((Shape) event.getNewValue());
+                break;
+            case "clear":
+            case "layered":
+            case "glyphAtlas":
+            case "labelCulling":
+            case "markerSprites":
+                invalidate();
+                break;
+            case "axisLabel":
+            case "axisLabels":
+                axisLayer = null;
+                break;
+            default:
+                // Bounds, margin and precision changes are detected by
+                // comparing the projection state on paint, so that the
+                // layers survive an extendBound that doesn't change bounds.
+                break;
+        }
+    }
+
     /**
      * Returns the main title of canvas.
      */
@@ -251,6 +565,9 @@ public class SmileFxCanvas {
      * Returns the font for title.
      */
     public Font getTitleFont() {
+        if (titleFont == null) {
+            titleFont = new Font(DEFAULT_TITLE_FONT, DEFAULT_TITLE_FONT_SIZE);
+        }
         return titleFont;
     }
 
@@ -441,34 +758,61 @@ public class SmileFxCanvas {
      * Paints the canvas.
      */
     public void paint(GraphicsContextInterface g2d, int width, int height) {
+        paint(graphics, shapes, g2d, width, height);
+    }
+
+    /**
+     * Paints the canvas with given graphics object and shapes.
+     */
+    void paint(Graphics graphics, List<Shape> shapes, GraphicsContextInterface g2d, int width, int height) {
+        paint(graphics, shapes, g2d, width, height, () -> false);
+    }
+
+    /**
+     * Paints the canvas with given graphics object and shapes unless it is
+     * cancelled. The cancellation is checked between the axes and shapes.
+     * @return false if the painting was cancelled.
+     */
+    boolean paint(Graphics graphics, List<Shape> shapes, GraphicsContextInterface g2d, int width, int height, BooleanSupplier cancelled) {
         graphics.setGraphics(g2d, width, height);
+        graphics.resetLabels();
         g2d.setFill(Color.WHITE);
         g2d.fillRect(0, 0, width, height);
         g2d.setStroke(Color.BLACK);
         g2d.setFill(Color.BLACK);
 
-        for (int i = 0; i < axis.length; i++) {
-            axis[i].paint(graphics);
-        }
+        if (layered && graphics == this.graphics && Platform.isFxApplicationThread()) {
+            paintLayers(g2d, width, height);
+        } else {
+            for (int i = 0; i < axis.length; i++) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+                axis[i].paint(graphics);
+            }
 
-        // draw plot
-        graphics.clip();
-        // with for-each loop, we will get a ConcurrentModificationException.
-        // Use for loop instead.
-        for (int i = 0; i < shapes.size(); i++) {
-            Shape shape = shapes.get(i);
-            graphics.setColor(shape.color);
-            shape.paint(graphics);
+            // draw plot
+            graphics.clip();
+            // with for-each loop, we will get a ConcurrentModificationException.
+            // Use for loop instead.
+            for (int i = 0; i < shapes.size(); i++) {
+                if (cancelled.getAsBoolean()) {
+                    graphics.clearClip();
+                    return false;
+                }
+                Shape shape = shapes.get(i);
+                graphics.setColor(shape.color);
+                shape.paint(graphics);
+            }
+            graphics.clearClip();
         }
-        graphics.clearClip();
 
         // draw legends
         if (isLegendVisible) {
-            Font font = g2d.getFont();
             int x = (int) (width * (1 - margin) + 20);
             int y = (int) (height * margin + 50);
-            int fontWidth = (int) font.getSize();
-            int fontHeight = (int) font.getSize();
+            int fontWidth = (int) g2d.getFontSize();
+            int fontHeight = (int) g2d.getFontSize();
 
             for (int i = 0; i < shapes.size(); i++) {
                 Shape s = shapes.get(i);
@@ -489,21 +833,110 @@ public class SmileFxCanvas {
         }
 
         if (title != null) {
-            g2d.setFont(titleFont);
+            if (titleFont != null) {
+                g2d.setFont(titleFont);
+            } else {
+                g2d.setFont(DEFAULT_TITLE_FONT, DEFAULT_TITLE_FONT_SIZE);
+            }
             g2d.setFill(titleColor);
             g2d.setStroke(titleColor);
-            int textWidth = (int) getTextWidth(title, titleFont);
+            int textWidth = (int) g2d.stringWidth(title);
             int x = (width - textWidth) / 2;
             int y = (int) (height * margin) / 2;
             g2d.fillText(title, x, y);
         }
+
+        return true;
     }
 
+    /**
+     * Paints the axes and shapes by compositing cached layers, rendering
+     * the missing ones first.
+     */
+    private void paintLayers(GraphicsContextInterface g2d, int width, int height) {
+        double[] state = graphics.projection.state();
+        if (!Arrays.equals(state, layerState)) {
+            invalidate();
+            layerState = state;
+        }
+        layers.keySet().retainAll(shapes);
+        layerSizes.keySet().retainAll(layers.keySet());
+
+        if (axisLayer == null) {
+            axisLayer = renderLayer(width, height, g -> {
+                for (Axis a : axis) {
+                    a.paint(g);
+                }
+            });
+        }
+
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            WritableImage layer = layers.get(shape);
+            if (shape instanceof Incremental) {
+                // Paint the elements appended since the layer was rendered
+                // onto the layer, or all elements into a new layer.
+                Incremental incremental = (Incremental) shape;
+                int size = incremental.size();
+                int from = layer == null ? 0 : layerSizes.getOrDefault(shape, 0);
+                if (layer == null || from < size) {
+                    layers.put(shape, renderLayer(width, height, g -> {
+                        if (layer != null) {
+                            g.g2d.drawImage(layer, 0, 0);
+                        }
+                        g.clip();
+                        g.setColor(shape.color);
+                        incremental.paint(g, from, size);
+                        g.clearClip();
+                    }));
+                    layerSizes.put(shape, size);
+                }
+            } else if (layer == null) {
+                layers.put(shape, renderLayer(width, height, g -> {
+                    g.clip();
+                    g.setColor(shape.color);
+                    shape.paint(g);
+                    g.clearClip();
+                }));
+            }
+        }
+
+        graphics.setGraphics(g2d, width, height);
+        g2d.drawImage(axisLayer, 0, 0);
+        for (int i = 0; i < shapes.size(); i++) {
+            g2d.drawImage(layers.get(shapes.get(i)), 0, 0);
+        }
+        g2d.setStroke(Color.BLACK);
+        g2d.setFill(Color.BLACK);
+    }
+
+    /**
+     * Renders a layer into a transparent image.
+     */
+    private WritableImage renderLayer(int width, int height, Consumer<Graphics> painter) {
+        if (layerCanvas == null || layerCanvas.getWidth() != width || layerCanvas.getHeight() != height) {
+            layerCanvas = new Canvas(width, height);
+        }
+
+        GraphicsContextProxy proxy = new GraphicsContextProxy(layerCanvas.getGraphicsContext2D());
+        proxy.clearRect(0, 0, width, height);
+        proxy.setStroke(Color.BLACK);
+        proxy.setFill(Color.BLACK);
+        graphics.setGraphics(proxy, width, height);
+        graphics.resetLabels();
+        painter.accept(graphics);
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        return layerCanvas.snapshot(params, null);
+    }
+
+    /**
+     * Returns the width of a string rendered in the given font. The widths
+     * are cached by font and string.
+     */
     public static double getTextWidth(String s, Font font) {
-        Text text = new Text(s);
-        text.setFont(font);
-        final double width = text.getLayoutBounds().getWidth();
-        return width;
+        return TextMetrics.FX.width(s, font);
     }
 
     /**
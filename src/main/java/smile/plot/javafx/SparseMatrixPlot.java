@@ -17,19 +17,34 @@
 
 package smile.plot.javafx;
 
-import javafx.scene.paint.Color;
 import java.util.Arrays;
+import javafx.scene.paint.Color;
 import smile.math.MathEx;
 import smile.math.matrix.SparseMatrix;
 
 /**
  * A graphical representation of sparse matrix data. Optionally, the values
  * in the matrix can be represented as colors.
- * 
+ * <p>
+ * By default, each nonzero entry is drawn as a rectangle. For matrices of
+ * millions of nonzeros, most of which are smaller than a pixel, the plot
+ * can aggregate the entries per screen pixel instead (see
+ * {@link #setAggregate(Aggregate)}), which renders one image.
+ *
  * @author Haifeng Li
  */
 public class SparseMatrixPlot extends Plot {
 
+    /**
+     * The aggregate of the entries in a screen pixel.
+     */
+    public enum Aggregate {
+        /** The number of nonzero entries. */
+        COUNT,
+        /** The maximum of the entries. */
+        MAX
+    }
+
     /**
      * The sparse matrix.
      */
@@ -58,6 +73,26 @@ public class SparseMatrixPlot extends Plot {
      * The color palette to represent values.
      */
     private Color[] palette;
+    /**
+     * The aggregate of entries per pixel, or null to draw each entry.
+     */
+    private Aggregate aggregate;
+    /**
+     * The range of aggregated values.
+     */
+    private ColorRange aggregateRange;
+    /**
+     * The aggregated image, cached for the projection state.
+     */
+    private SpriteSheet image;
+    /**
+     * The screen location of image.
+     */
+    private int imageX, imageY;
+    /**
+     * The projection state that the image was rendered with.
+     */
+    private double[] imageState;
 
     /**
      * Constructor.
@@ -101,28 +136,64 @@ public class SparseMatrixPlot extends Plot {
 
         // In case of outliers, we use 1% and 99% quantiles as lower and
         // upper limits instead of min and max.
-        double[] values = sparse.nonzeros().mapToDouble(e -> e.x).filter(x -> !Double.isNaN(x)).toArray();
+        ColorRange range = ColorRange.of(sparse, ColorRange.Method.EXACT);
 
-        if (values.length == 0) {
+        if (range.size() == 0) {
             throw new IllegalArgumentException("Sparse matrix has no non-zero values");
         }
 
-        Arrays.sort(values);
-        min = values[(int) Math.round(0.01 * values.length)];
-        max = values[(int) Math.round(0.99 * (values.length-1))];
+        min = range.getLower();
+        max = range.getUpper();
         width = (max - min) / palette.length;
     }
 
-    @Override
-    public double[] getLowerBound() {
-        double[] bound = {0, 0};
-        return bound;
+    /**
+     * Sets the range of colors, e.g. the approximate or other quantiles
+     * of non-zero values computed by {@link ColorRange}. It has no effect
+     * while entries are aggregated per pixel, since the aggregated counts
+     * or maxima are scaled to their own quantiles.
+     * @throws IllegalStateException if the plot has no color palette.
+     */
+    public SparseMatrixPlot setColorRange(ColorRange range) {
+        if (palette == null) {
+            throw new IllegalStateException("The plot has no color palette");
+        }
+
+        min = range.getLower();
+        max = range.getUpper();
+        width = (max - min) / palette.length;
+        return this;
+    }
+
+    /**
+     * Sets the aggregate of entries per screen pixel. The nonzeros in the
+     * visible columns are accumulated into a count or maximum per pixel
+     * by parallel walks over the compressed columns, and the grid is drawn
+     * as one image. With a palette, the colors are scaled to the 1% and
+     * 99% quantiles of the aggregated values.
+     * @param aggregate the aggregate, or null to draw each entry as a
+     *                  rectangle.
+     */
+    public SparseMatrixPlot setAggregate(Aggregate aggregate) {
+        synchronized (this) {
+            this.aggregate = aggregate;
+            image = null;
+            imageState = null;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the aggregate of entries per screen pixel, or null if each
+     * entry is drawn.
+     */
+    public Aggregate getAggregate() {
+        return aggregate;
     }
 
     @Override
-    public double[] getUpperBound() {
-        double[] bound = {sparse.ncols(), sparse.nrows()};
-        return bound;
+    protected double[][] computeBounds() {
+        return new double[][]{{0, 0}, {sparse.ncols(), sparse.nrows()}};
     }
 
     @Override
@@ -130,6 +201,62 @@ public class SparseMatrixPlot extends Plot {
         double[] start = new double[2];
         double[] end = new double[2];
 
+        double min = this.min;
+        double max = this.max;
+        if (aggregate != null) {
+            synchronized (this) {
+                paintAggregate(g);
+                if (aggregateRange != null) {
+                    min = aggregateRange.getLower();
+                    max = aggregateRange.getUpper();
+                }
+            }
+        } else {
+            paintEntries(g, start, end);
+        }
+
+        if (palette != null) {
+            g.clearClip();
+
+            double height = 0.7 / palette.length;
+            start[0] = 1.1;
+            start[1] = 0.15;
+            end[0] = 1.13;
+            end[1] = start[1] - height;
+
+            for (int i = 0; i < palette.length; i++) {
+                g.setColor(palette[i]);
+                g.fillRectBaseRatio(start, end);
+                start[1] += height;
+                end[1] += height;
+            }
+
+            g.setColor(Color.BLACK);
+            start[1] -= height;
+            end[1] = 0.15 - height;
+            g.drawRectBaseRatio(start, end);
+            start[0] = 1.14;
+            double log = Math.log10(Math.abs(max));
+            int decimal = 1;
+            if (log < 0) {
+                decimal = (int) -log + 1;
+            }
+            g.drawTextBaseRatio(String.valueOf(MathEx.round(max, decimal)), start, 0.0, 1.0);
+
+            start[1] = 0.15 - height;
+            log = Math.log10(Math.abs(min));
+            decimal = 1;
+            if (log < 0) {
+                decimal = (int) -log + 1;
+            }
+            g.drawTextBaseRatio(String.valueOf(MathEx.round(min, decimal)), start, 0.0, 0.0);
+        }
+    }
+
+    /**
+     * Draws each entry as a rectangle.
+     */
+    private void paintEntries(Graphics g, double[] start, double[] end) {
         g.setColor(color);
         for (SparseMatrix.Entry cell : sparse) {
             int i = cell.i;
@@ -174,42 +301,33 @@ public class SparseMatrixPlot extends Plot {
             }
             g.fillRect(start, end);
         }
+    }
 
-        if (palette != null) {
-            g.clearClip();
-
-            double height = 0.7 / palette.length;
-            start[0] = 1.1;
-            start[1] = 0.15;
-            end[0] = 1.13;
-            end[1] = start[1] - height;
-
-            for (int i = 0; i < palette.length; i++) {
-                g.setColor(palette[i]);
-                g.fillRectBaseRatio(start, end);
-                start[1] += height;
-                end[1] += height;
-            }
-
-            g.setColor(Color.BLACK);
-            start[1] -= height;
-            end[1] = 0.15 - height;
-            g.drawRectBaseRatio(start, end);
-            start[0] = 1.14;
-            double log = Math.log10(Math.abs(max));
-            int decimal = 1;
-            if (log < 0) {
-                decimal = (int) -log + 1;
+    /**
+     * Draws the entries aggregated per pixel.
+     */
+    private void paintAggregate(Graphics g) {
+        double[] state = g.projection.state();
+        if (!Arrays.equals(state, imageState)) {
+            image = null;
+            aggregateRange = null;
+            SparseRaster raster = SparseRaster.of(sparse, g);
+            if (raster != null) {
+                boolean byCount = aggregate == Aggregate.COUNT;
+                aggregateRange = raster.range(byCount);
+                if (aggregateRange.size() > 0) {
+                    image = raster.image(byCount, palette == null ? null : Palette.argb(palette), Palette.argb(color), aggregateRange);
+                    imageX = raster.x0;
+                    imageY = raster.y0;
+                } else {
+                    aggregateRange = null;
+                }
             }
-            g.drawTextBaseRatio(String.valueOf(MathEx.round(max, decimal)), start, 0.0, 1.0);
+            imageState = state;
+        }
 
-            start[1] = 0.15 - height;
-            log = Math.log10(Math.abs(min));
-            decimal = 1;
-            if (log < 0) {
-                decimal = (int) -log + 1;
-            }
-            g.drawTextBaseRatio(String.valueOf(MathEx.round(min, decimal)), start, 0.0, 0.0);
+        if (image != null) {
+            g.g2d.drawSprite(image, 0, 0, image.getWidth(), image.getHeight(), imageX, imageY);
         }
     }
 
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleConsumer;
+import java.util.stream.IntStream;
+import smile.math.matrix.SparseMatrix;
+
+/**
+ * Aggregates the nonzero entries of a sparse matrix into a grid of screen
+ * pixels, i.e. the count or the maximum of entries per pixel. The cell of
+ * an entry covers the pixels whose centers fall in it, or the pixel of its
+ * center if the cell is smaller than a pixel. The image is split into
+ * strips of pixel columns, one per worker, and each worker walks the
+ * compressed columns of the matrix that fall in its strip. So the workers
+ * write disjoint parts of the grid without merging.
+ *
+ * @author Haifeng Li
+ */
+class SparseRaster {
+
+    /**
+     * The left of grid on the screen.
+     */
+    final int x0;
+    /**
+     * The top of grid on the screen.
+     */
+    final int y0;
+    /**
+     * The width of grid.
+     */
+    final int width;
+    /**
+     * The height of grid.
+     */
+    final int height;
+    /**
+     * The number of entries per pixel.
+     */
+    final int[] count;
+    /**
+     * The maximum of entries per pixel.
+     */
+    final double[] max;
+
+    /**
+     * Constructor.
+     */
+    private SparseRaster(int x0, int y0, int width, int height) {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.width = width;
+        this.height = height;
+        this.count = new int[width * height];
+        this.max = new double[width * height];
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Aggregates the visible entries of a matrix, whose cell (i, j) covers
+     * [j, j+1] x [nrow-i-1, nrow-i]. Returns null if no cell is visible.
+     */
+    static SparseRaster of(SparseMatrix sparse, Graphics g) {
+        int nrow = sparse.nrows();
+        int ncol = sparse.ncols();
+        double[] lower = g.getLowerBound();
+        double[] upper = g.getUpperBound();
+        int j0 = Math.max(0, (int) Math.floor(lower[0]));
+        int j1 = Math.min(ncol, (int) Math.ceil(upper[0]));
+        int i0 = Math.max(0, (int) Math.floor(nrow - upper[1]));
+        int i1 = Math.min(nrow, (int) Math.ceil(nrow - lower[1]));
+        if (j1 <= j0 || i1 <= i0) {
+            return null;
+        }
+
+        // In 2D, the screen x only depends on the logical x, and the
+        // screen y on the logical y, both linearly. The corners of matrix
+        // are projected since the screen coordinates may be rounded.
+        double[] sx = new double[2];
+        double[] sy = new double[2];
+        g.projection.project(new double[]{0, ncol}, new double[]{0, nrow}, sx, sy, 2);
+        double bx = (sx[1] - sx[0]) / ncol;
+        double by = (sy[1] - sy[0]) / nrow;
+        double ax = sx[0];
+        double ay = sy[1];
+
+        Projection projection = g.projection;
+        int x0 = Math.max(0, (int) Math.floor(Math.min(ax + bx * j0, ax + bx * j1)));
+        int x1 = Math.min(projection.width, (int) Math.ceil(Math.max(ax + bx * j0, ax + bx * j1)));
+        int y0 = Math.max(0, (int) Math.floor(Math.min(ay - by * i0, ay - by * i1)));
+        int y1 = Math.min(projection.height, (int) Math.ceil(Math.max(ay - by * i0, ay - by * i1)));
+        if (x1 <= x0 || y1 <= y0) {
+            return null;
+        }
+
+        SparseRaster raster = new SparseRaster(x0, y0, x1 - x0, y1 - y0);
+        int[][] columns = cover(ax, bx, j0, j1, x0, x1);
+        int[][] rows = cover(ay, -by, i0, i1, y0, y1);
+        int[] left = columns[0], right = columns[1];
+        int[] top = rows[0], bottom = rows[1];
+
+        int tasks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), raster.width / 16));
+        IntStream.range(0, tasks).parallel().forEach(k -> {
+            int p0 = x0 + raster.width * k / tasks;
+            int p1 = x0 + raster.width * (k + 1) / tasks;
+            // The pixel ranges of columns are non-decreasing in j.
+            int from = j0, to = j1;
+            while (from < to && right[from - j0] <= p0) from++;
+            while (to > from && left[to - 1 - j0] >= p1) to--;
+
+            sparse.forEachNonZero(from, to, (i, j, x) -> {
+                if (i < i0 || i >= i1) return;
+                int c0 = Math.max(p0, left[j - j0]), c1 = Math.min(p1, right[j - j0]);
+                for (int r = top[i - i0]; r < bottom[i - i0]; r++) {
+                    int offset = (r - y0) * raster.width - x0;
+                    for (int c = c0; c < c1; c++) {
+                        raster.count[offset + c]++;
+                        if (x > raster.max[offset + c]) raster.max[offset + c] = x;
+                    }
+                }
+            });
+        });
+
+        return raster;
+    }
+
+    /**
+     * Returns the pixel ranges [start, end) covered by the cells [k, k+1)
+     * for k in [from, to), whose screen edges are a + b * k.
+     */
+    private static int[][] cover(double a, double b, int from, int to, int min, int max) {
+        int[] start = new int[to - from];
+        int[] end = new int[to - from];
+        for (int k = from; k < to; k++) {
+            double e0 = a + b * k;
+            double e1 = a + b * (k + 1);
+            double lo = Math.min(e0, e1);
+            double hi = Math.max(e0, e1);
+            int p0 = (int) Math.ceil(lo - 0.5);
+            int p1 = (int) Math.ceil(hi - 0.5);
+            if (p1 <= p0) {
+                p0 = (int) Math.floor((lo + hi) / 2);
+                p1 = p0 + 1;
+            }
+            start[k - from] = Math.max(min, Math.min(max, p0));
+            end[k - from] = Math.max(min, Math.min(max, p1));
+        }
+        return new int[][]{start, end};
+    }
+
+    /**
+     * Returns the range of aggregated values over the pixels with entries.
+     * @param byCount true to aggregate by count, false by maximum.
+     */
+    ColorRange range(boolean byCount) {
+        return ColorRange.of(new ColorRange.Source() {
+            @Override
+            public int size() {
+                return height;
+            }
+
+            @Override
+            public void scan(int from, int to, DoubleConsumer consumer) {
+                for (int k = from * width; k < to * width; k++) {
+                    if (count[k] > 0) {
+                        consumer.accept(byCount ? count[k] : max[k]);
+                    }
+                }
+            }
+        }, ColorRange.LOWER, ColorRange.UPPER, ColorRange.Method.EXACT);
+    }
+
+    /**
+     * Renders the grid as an image.
+     * @param byCount true to color by count, false by maximum.
+     * @param palette the ARGB palette, or null to use a single color.
+     * @param color the ARGB color if palette is null.
+     * @param range the range of colors.
+     */
+    SpriteSheet image(boolean byCount, int[] palette, int color, ColorRange range) {
+        BufferedImage buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+        double min = range.getLower();
+        double step = palette == null ? 1.0 : (range.getUpper() - min) / palette.length;
+        for (int k = 0; k < pixels.length; k++) {
+            if (count[k] > 0) {
+                if (palette == null) {
+                    pixels[k] = color;
+                } else {
+                    double z = byCount ? count[k] : max[k];
+                    int c = step > 0 ? (int) ((z - min) / step) : 0;
+                    pixels[k] = palette[Math.max(0, Math.min(palette.length - 1, c))];
+                }
+            }
+        }
+        return new SpriteSheet(buffer);
+    }
+}
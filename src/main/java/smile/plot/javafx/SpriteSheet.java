@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * An immutable image of pre-rendered sprites, e.g. glyphs or point marks,
+ * that are stamped as sub-rectangles. The pixels are non-premultiplied
+ * ARGB so that raster backends can blit them directly. The JavaFX and
+ * Java2D images of the sheet are created on first use.
+ *
+ * @author Haifeng Li
+ */
+public class SpriteSheet {
+
+    /**
+     * The Java2D image of sheet, which owns the pixels.
+     */
+    private final BufferedImage image;
+    /**
+     * The non-premultiplied ARGB pixels in row-major order.
+     */
+    final int[] pixels;
+    /**
+     * The JavaFX image of sheet.
+     */
+    private WritableImage fxImage;
+
+    /**
+     * Constructor.
+     * @param image the rendered sprites, which must not be modified later.
+     */
+    SpriteSheet(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            throw new IllegalArgumentException("Sprite sheet must be TYPE_INT_ARGB: " + image.getType());
+        }
+
+        this.image = image;
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns the width of sheet.
+     */
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * Returns the height of sheet.
+     */
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Returns the Java2D image of sheet.
+     */
+    BufferedImage getBufferedImage() {
+        return image;
+    }
+
+    /**
+     * Returns the JavaFX image of sheet.
+     */
+    public synchronized WritableImage getImage() {
+        if (fxImage == null) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            fxImage = new WritableImage(width, height);
+            fxImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        }
+        return fxImage;
+    }
+}
@@ -63,7 +63,12 @@ public class StaircasePlot extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
+    protected double[][] computeBounds() {
+        return new double[][]{lowerBound(), upperBound()};
+    }
+
+    /** Returns the lower bound of data. */
+    private double[] lowerBound() {
         double[] bound = MathEx.colMin(lines[0].points);
         for (int k = 1; k < lines.length; k++) {
             for (double[] x : lines[k].points) {
@@ -78,8 +83,8 @@ public class StaircasePlot extends Plot {
         return bound;
     }
 
-    @Override
-    public double[] getUpperBound() {
+    /** Returns the upper bound of data. */
+    private double[] upperBound() {
         double[] bound = MathEx.colMax(lines[0].points);
         for (int k = 1; k < lines.length; k++) {
             for (double[] x : lines[k].points) {
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.nio.DoubleBuffer;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+/**
+ * A 2D line of live data, e.g. telemetry, to which points are appended
+ * by producer threads. The points are kept in a fixed-capacity ring
+ * buffer, and only the points in a sliding window of x are shown. The x
+ * coordinates must be non-decreasing. When the buffer is full or a point
+ * falls out of the window, the oldest points are dropped.
+ * <p>
+ * The bounds of window are maintained incrementally with monotonic
+ * queues of y, so that an append costs amortized constant time no matter
+ * how large the window is. The bounds of attached canvases are updated
+ * at most once per JavaFX pulse, which triggers their repaint, so that
+ * a fast producer doesn't flood the JavaFX thread.
+ *
+ * @author Haifeng Li
+ */
+public class StreamingLine extends Plot {
+
+    /**
+     * The stroke of line.
+     */
+    private static final BasicFXStroke STROKE = new BasicFXStroke(1F,
+            StrokeLineCap.BUTT, StrokeLineJoin.ROUND);
+
+    /**
+     * The capacity of ring buffer.
+     */
+    private final int capacity;
+    /**
+     * The width of sliding window in x, or infinity to keep all points.
+     */
+    private final double window;
+    /**
+     * The ring buffer of x coordinates.
+     */
+    private final double[] x;
+    /**
+     * The ring buffer of y coordinates.
+     */
+    private final double[] y;
+    /**
+     * The sequence number of oldest point in the buffer. The point of
+     * sequence number i is stored at i % capacity.
+     */
+    private long head = 0;
+    /**
+     * The sequence number of next point.
+     */
+    private long tail = 0;
+    /**
+     * The sequence numbers of points whose y is smaller than all later
+     * points, in increasing order of y. The front is the minimum.
+     */
+    private final MonotonicQueue minQueue;
+    /**
+     * The sequence numbers of points whose y is larger than all later
+     * points, in decreasing order of y. The front is the maximum.
+     */
+    private final MonotonicQueue maxQueue;
+    /**
+     * The updater of canvases whose bounds follow the window.
+     */
+    private final CanvasUpdater updater = new CanvasUpdater(this::update);
+
+    /**
+     * A queue of sequence numbers that is monotonic in y, which
+     * yields the minimum or maximum of sliding window.
+     */
+    private class MonotonicQueue {
+        /** The ring buffer of sequence numbers. */
+        final long[] seq = new long[capacity];
+        /** The sign that makes the queue increasing in sign * y. */
+        final double sign;
+        /** The number of queued elements. */
+        int size = 0;
+        /** The position of front. */
+        int front = 0;
+
+        MonotonicQueue(double sign) {
+            this.sign = sign;
+        }
+
+        /** Returns the y of a sequence number. */
+        double y(long i) {
+            return y[(int) (i % capacity)];
+        }
+
+        /** Adds a point, dropping the points it dominates. */
+        void push(long i) {
+            double v = sign * y(i);
+            while (size > 0 && sign * y(seq[(front + size - 1) % capacity]) >= v) {
+                size--;
+            }
+            seq[(front + size) % capacity] = i;
+            size++;
+        }
+
+        /** Drops the points older than a sequence number. */
+        void evict(long head) {
+            while (size > 0 && seq[front] < head) {
+                front = (front + 1) % capacity;
+                size--;
+            }
+        }
+
+        /** Returns the y of front, i.e. the extreme of window. */
+        double peek() {
+            return y(seq[front]);
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param capacity the maximum number of points kept.
+     * @param window the width of sliding window in x. Use
+     *               Double.POSITIVE_INFINITY to keep all points in
+     *               the buffer.
+     * @param color the color of line.
+     */
+    public StreamingLine(int capacity, double window, Color color) {
+        super(color);
+
+        if (capacity <= 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        if (!(window > 0)) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+
+        this.capacity = capacity;
+        this.window = window;
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.minQueue = new MonotonicQueue(1.0);
+        this.maxQueue = new MonotonicQueue(-1.0);
+    }
+
+    /**
+     * Appends a point. Thread safe.
+     * @param x the x coordinate, which must not be less than that of
+     *          the last point.
+     * @param y the y coordinate.
+     */
+    public void append(double x, double y) {
+        synchronized (this) {
+            add(x, y);
+        }
+        updater.request();
+    }
+
+    /**
+     * Appends a block of points under one lock. Thread safe.
+     * @param x the x coordinates in non-decreasing order.
+     * @param y the y coordinates.
+     */
+    public void append(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("The length of x and y are not the same.");
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < x.length; i++) {
+                add(x[i], y[i]);
+            }
+        }
+        updater.request();
+    }
+
+    /**
+     * Removes all points. Thread safe.
+     */
+    public void clear() {
+        synchronized (this) {
+            head = tail;
+            minQueue.evict(head);
+            maxQueue.evict(head);
+        }
+        updater.request();
+    }
+
+    /**
+     * Returns the number of points in the window.
+     */
+    public synchronized int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Adds a point to the ring buffer and slides the window.
+     */
+    private void add(double px, double py) {
+        if (Double.isNaN(px) || Double.isNaN(py)) {
+            throw new IllegalArgumentException(String.format("Invalid point: (%f, %f)", px, py));
+        }
+
+        if (tail > head && px < x[(int) ((tail - 1) % capacity)]) {
+            throw new IllegalArgumentException("The x coordinate is smaller than that of last point: " + px);
+        }
+
+        if (tail - head == capacity) {
+            head++;
+        }
+
+        int i = (int) (tail % capacity);
+        x[i] = px;
+        y[i] = py;
+        tail++;
+
+        double start = px - window;
+        while (x[(int) (head % capacity)] < start) {
+            head++;
+        }
+
+        minQueue.evict(head);
+        maxQueue.evict(head);
+        minQueue.push(tail - 1);
+        maxQueue.push(tail - 1);
+    }
+
+    /**
+     * Updates the bounds and layer of a canvas, which fires its repaint.
+     * Called on the JavaFX thread.
+     */
+    private void update(SmileFxCanvas canvas) {
+        canvas.invalidate(this);
+        canvas.setBound(getLowerBound(), getUpperBound());
+    }
+
+    /**
+     * Attaches a canvas whose bounds follow the window. The canvas should
+     * contain this line. Without the JavaFX toolkit, e.g. in batch export,
+     * the canvas is not updated and takes the bounds of window when it is
+     * created.
+     */
+    public void attach(SmileFxCanvas canvas) {
+        updater.attach(canvas);
+    }
+
+    /**
+     * Detaches a canvas. The pulse timer is stopped when no canvas
+     * is attached.
+     */
+    public void detach(SmileFxCanvas canvas) {
+        updater.detach(canvas);
+    }
+
+    /**
+     * Returns a canvas attached to this line. The canvas is held weakly,
+     * so a canvas discarded without detach() is not kept alive or updated.
+     */
+    @Override
+    public SmileFxCanvas canvas() {
+        SmileFxCanvas canvas = new SmileFxCanvas(getLowerBound(), getUpperBound(), false);
+        canvas.add(this);
+        attach(canvas);
+        return canvas;
+    }
+
+    @Override
+    public double[] getLowerBound() {
+        return computeBounds()[0];
+    }
+
+    @Override
+    public double[] getUpperBound() {
+        return computeBounds()[1];
+    }
+
+    /**
+     * Computes the bounds of current window. They change as points are
+     * appended, so they are computed on every call instead of once.
+     */
+    @Override
+    protected synchronized double[][] computeBounds() {
+        if (tail == head) {
+            return new double[][]{{0.0, 0.0}, {1.0, 1.0}};
+        }
+
+        double x0 = x[(int) (head % capacity)];
+        double x1 = x[(int) ((tail - 1) % capacity)];
+        double y0 = minQueue.peek();
+        double y1 = maxQueue.peek();
+        return new double[][]{
+                {x0 < x1 ? x0 : x0 - 1.0, y0 < y1 ? y0 : y0 - 1.0},
+                {x0 < x1 ? x1 : x1 + 1.0, y0 < y1 ? y1 : y1 + 1.0}
+        };
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        int n;
+        double[] px, py;
+        synchronized (this) {
+            n = (int) (tail - head);
+            px = g.scratch(0, n);
+            py = g.scratch(1, n);
+
+            // Copy the window in at most two blocks of the ring.
+            int i = (int) (head % capacity);
+            int first = Math.min(n, capacity - i);
+            System.arraycopy(x, i, px, 0, first);
+            System.arraycopy(y, i, py, 0, first);
+            System.arraycopy(x, 0, px, first, n - first);
+            System.arraycopy(y, 0, py, first, n - first);
+        }
+
+        if (n < 2) {
+            return;
+        }
+
+        g.setColor(color);
+        FXStroke s = g.getStroke();
+        g.setStroke(STROKE);
+
+        // The window is reduced to the first, minimum, maximum and last
+        // points of each pixel column, which renders the same as the full
+        // line. The pyramid of window is built in the same linear time as
+        // a single scan.
+        Projection p = g.projection;
+        int columns = (int) Math.ceil(p.width * (1 - 2 * p.canvas.margin));
+        if (columns > 0 && n > 4 * (columns + 2)) {
+            MinMaxPyramid pyramid = new MinMaxPyramid(new DoubleColumns(DoubleBuffer.wrap(px, 0, n), DoubleBuffer.wrap(py, 0, n)));
+            px = g.scratch(2, 4 * (columns + 2));
+            py = g.scratch(3, 4 * (columns + 2));
+            n = pyramid.envelope(g.getLowerBound()[0], g.getUpperBound()[0], columns, px, py);
+        }
+        g.drawLine(px, py, n);
+
+        g.setStroke(s);
+    }
+}
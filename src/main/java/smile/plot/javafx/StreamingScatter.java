@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javafx.scene.paint.Color;
+
+/**
+ * A scatter plot of live data to which points are appended by producer
+ * threads, e.g. the samples of an online clustering. The points are kept
+ * in fixed-size chunks of packed coordinates, so that an append never
+ * copies the points before, and the bounds are updated on each append
+ * instead of scanning the points.
+ * <p>
+ * The attached canvases are updated at most once per JavaFX pulse. If the
+ * canvas is layered (see {@link SmileFxCanvas#setLayered(boolean)}) and
+ * the bounds don't change, only the points appended since the last
+ * repaint are painted onto the cached layer of the plot.
+ *
+ * @author Haifeng Li
+ */
+public class StreamingScatter extends Plot implements Incremental {
+
+    /**
+     * The number of points per chunk.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The dimension of points.
+     */
+    private final int dimension;
+    /**
+     * The mark of points.
+     */
+    private final char mark;
+    /**
+     * The chunks of packed coordinates. Every chunk but the last is full.
+     */
+    private final List<double[]> chunks = new ArrayList<>();
+    /**
+     * The number of points.
+     */
+    private int size = 0;
+    /**
+     * The lower bound of points.
+     */
+    private final double[] lowerBound;
+    /**
+     * The upper bound of points.
+     */
+    private final double[] upperBound;
+    /**
+     * The updater of canvases showing the points.
+     */
+    private final CanvasUpdater updater = new CanvasUpdater(this::update);
+
+    /**
+     * Constructor.
+     * @param dimension the dimension of points, 2 or 3.
+     * @param mark the mark of points.
+     * @param color the color of points.
+     */
+    public StreamingScatter(int dimension, char mark, Color color) {
+        super(color);
+
+        if (dimension != 2 && dimension != 3) {
+            throw new IllegalArgumentException("Invalid dimension: " + dimension);
+        }
+
+        this.dimension = dimension;
+        this.mark = mark;
+        this.lowerBound = new double[dimension];
+        this.upperBound = new double[dimension];
+        Arrays.fill(lowerBound, Double.POSITIVE_INFINITY);
+        Arrays.fill(upperBound, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Appends a point. Thread safe.
+     * @param point the coordinates of point.
+     */
+    public void append(double... point) {
+        synchronized (this) {
+            add(point);
+        }
+        updater.request();
+    }
+
+    /**
+     * Appends a block of points under one lock. Thread safe.
+     * @param points a n-by-2 or n-by-3 matrix of the coordinates of points.
+     */
+    public void append(double[][] points) {
+        synchronized (this) {
+            for (double[] point : points) {
+                add(point);
+            }
+        }
+        updater.request();
+    }
+
+    /**
+     * Adds a point to the last chunk and extends the bounds.
+     */
+    private void add(double[] point) {
+        if (point.length != dimension) {
+            throw new IllegalArgumentException("Invalid point dimension: " + point.length);
+        }
+
+        int offset = size % CHUNK_SIZE;
+        if (offset == 0) {
+            chunks.add(new double[CHUNK_SIZE * dimension]);
+        }
+
+        double[] chunk = chunks.get(chunks.size() - 1);
+        System.arraycopy(point, 0, chunk, offset * dimension, dimension);
+        for (int i = 0; i < dimension; i++) {
+            double x = point[i];
+            if (x < lowerBound[i]) lowerBound[i] = x;
+            if (x > upperBound[i]) upperBound[i] = x;
+        }
+        size++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Extends the bounds of a canvas to the points, which fires its
+     * repaint. Called on the JavaFX thread.
+     */
+    private void update(SmileFxCanvas canvas) {
+        canvas.extendBound(getLowerBound(), getUpperBound());
+    }
+
+    /**
+     * Attaches a canvas that is repainted when points are appended. The
+     * canvas should contain this plot.
+     */
+    public void attach(SmileFxCanvas canvas) {
+        updater.attach(canvas);
+    }
+
+    /**
+     * Detaches a canvas.
+     */
+    public void detach(SmileFxCanvas canvas) {
+        updater.detach(canvas);
+    }
+
+    /**
+     * Returns a canvas attached to this plot. The canvas is held weakly,
+     * so a canvas discarded without detach() is not kept alive or updated.
+     */
+    @Override
+    public SmileFxCanvas canvas() {
+        SmileFxCanvas canvas = super.canvas();
+        attach(canvas);
+        return canvas;
+    }
+
+    @Override
+    public double[] getLowerBound() {
+        return computeBounds()[0];
+    }
+
+    @Override
+    public double[] getUpperBound() {
+        return computeBounds()[1];
+    }
+
+    /**
+     * Computes the bounds of points appended so far. They change as points
+     * are appended, so they are computed on every call instead of once.
+     */
+    @Override
+    protected synchronized double[][] computeBounds() {
+        double[] lower = size == 0 ? new double[dimension] : lowerBound.clone();
+        double[] upper = size == 0 ? new double[dimension] : upperBound.clone();
+        for (int i = 0; i < dimension; i++) {
+            if (size == 0 || lower[i] == upper[i]) {
+                lower[i] -= 1.0;
+                upper[i] += 1.0;
+            }
+        }
+        return new double[][]{lower, upper};
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        paint(g, 0, size());
+    }
+
+    @Override
+    public void paint(Graphics g, int from, int to) {
+        double[][] blocks;
+        synchronized (this) {
+            // The points before size are never modified, so they can be
+            // read without the lock once the chunks are collected.
+            blocks = chunks.toArray(new double[chunks.size()][]);
+        }
+
+        g.setColor(color);
+        for (int k = from / CHUNK_SIZE; k * CHUNK_SIZE < to; k++) {
+            int start = k * CHUNK_SIZE;
+            int i = Math.max(from, start) - start;
+            int j = Math.min(to, start + CHUNK_SIZE) - start;
+            g.drawPoints(mark, blocks[k], i, j);
+        }
+    }
+}
@@ -33,17 +33,9 @@ public class Surface extends Plot {
      */
     private double[][][] data;
     /**
-     * Vertex Z-axis value in camera coordinate.
+     * The lower and upper bounds of data.
      */
-    private double[][] zc;
-    /**
-     * Average z-axis value of triangles to fill for painter's algorithm.
-     */
-    private double[] az;
-    /**
-     * The indices of triangles in descending order of average z-axis values.
-     */
-    private int[] order;
+    private final double[][] bounds;
     /**
      * Triangles. Each row is the index of triangle vertices in data.
      */
@@ -85,24 +77,13 @@ public class Surface extends Plot {
 
         int m = data.length;
         int n = data[0].length;
-        zc = new double[m][n];
-
         triangles = new int[2 * m * n][6];
-        az = new double[2 * m * n];
-        order = new int[az.length];
 
-        min = Double.POSITIVE_INFINITY;
-        max = Double.NEGATIVE_INFINITY;
+        bounds = Bounds.of(data);
+        min = bounds[0][2];
+        max = bounds[1][2];
         for (int i = 0, k = 0; i < m; i++) {
             for (int j = 0; j < n; j++, k += 2) {
-                double z = data[i][j][2];
-                if (z < min) {
-                    min = z;
-                }
-                if (z > max) {
-                    max = z;
-                }
-
                 if (i < m - 1 && j < n - 1) {
                     triangles[k][0] = i;
                     triangles[k][1] = j;
@@ -128,72 +109,30 @@ public class Surface extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = {data[0][0][0], data[0][0][1], data[0][0][2]};
-        for (double[][] row : data) {
-            for (double[] x : row) {
-                if (x[0] < bound[0]) {
-                    bound[0] = x[0];
-                }
-                if (x[1] < bound[1]) {
-                    bound[1] = x[1];
-                }
-                if (x[2] < bound[2]) {
-                    bound[2] = x[2];
-                }
-            }
-        }
-
-        return bound;
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = {data[0][0][0], data[0][0][1], data[0][0][2]};
-        for (double[][] row : data) {
-            for (double[] x : row) {
-                if (x[0] > bound[0]) {
-                    bound[0] = x[0];
-                }
-                if (x[1] > bound[1]) {
-                    bound[1] = x[1];
-                }
-                if (x[2] > bound[2]) {
-                    bound[2] = x[2];
-                }
-            }
-        }
-
-        return bound;
+    protected double[][] computeBounds() {
+        return bounds;
     }
 
     @Override
     public void paint(Graphics g) {
-        g.setColor(color);
-
-        for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[i].length - 1; j++) {
-                g.drawLine(data[i][j], data[i][j + 1]);
-            }
-        }
+        int m = data.length;
+        int n = data[0].length;
+        double[] sx = g.scratch(0, m * n);
+        double[] sy = g.scratch(1, m * n);
 
-        for (int i = 0; i < data.length - 1; i++) {
-            for (int j = 0; j < data[i].length; j++) {
-                g.drawLine(data[i][j], data[i + 1][j]);
-            }
-        }
+        g.setColor(color);
+        g.drawMesh(data, sx, sy);
 
         if (palette != null) {
-            int m = data.length;
-            int n = data[0].length;
             Projection3D p3d = (Projection3D) g.projection;
 
             /**
              * Calculates z-axis values in camera coordinates.
              */
+            double[] zc = g.scratch(2, m * n);
             for (int i = 0; i < m; i++) {
                 for (int j = 0; j < n; j++) {
-                    zc[i][j] = p3d.z(data[i][j]);
+                    zc[i * n + j] = p3d.z(data[i][j]);
                 }
             }
 
@@ -202,8 +141,9 @@ public class Surface extends Plot {
              * Note that this is actually just sum, which is sufficient
              * for us to sort them.
              */
+            double[] az = g.scratch(3, triangles.length);
             for (int i = 0; i < triangles.length; i++) {
-                az[i] = (zc[triangles[i][0]][triangles[i][1]] + zc[triangles[i][2]][triangles[i][3]] + zc[triangles[i][4]][triangles[i][5]]);
+                az[i] = (zc[triangles[i][0] * n + triangles[i][1]] + zc[triangles[i][2] * n + triangles[i][3]] + zc[triangles[i][4] * n + triangles[i][5]]);
             }
 
             /**
@@ -214,11 +154,14 @@ public class Surface extends Plot {
              * obvious example of where the painter's algorithm falls short
              * is with intersecting surfaces.
              */
+            int[] order = new int[triangles.length];
             for (int i = 0; i < order.length; i++) {
                 order[i] = i;
             }
-            QuickSort.sort(az, order);
+            QuickSort.sort(az, order, order.length);
 
+            double[] tx = new double[3];
+            double[] ty = new double[3];
             for (int i : order) {
                 double avg = (data[triangles[i][0]][triangles[i][1]][2] + data[triangles[i][2]][triangles[i][3]][2] + data[triangles[i][4]][triangles[i][5]][2]) / 3.0;
                 int k = (int) ((avg - min) / width);
@@ -227,7 +170,12 @@ public class Surface extends Plot {
                 }
 
                 g.setColor(palette[k]);
-                g.fillPolygon(data[triangles[i][0]][triangles[i][1]], data[triangles[i][2]][triangles[i][3]], data[triangles[i][4]][triangles[i][5]]);
+                for (int v = 0; v < 3; v++) {
+                    int p = triangles[i][2 * v] * n + triangles[i][2 * v + 1];
+                    tx[v] = sx[p];
+                    ty[v] = sy[p];
+                }
+                g.getGraphics().fillPolygon(tx, ty, 3);
             }
         }
     }
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleBiFunction;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * A bounded, thread-safe cache of string widths keyed by font and string.
+ * The font type is that of the text engine, e.g. JavaFX or Java2D fonts.
+ * Measuring text with a layout engine is expensive compared to drawing
+ * it, while plots measure the same tick and legend labels on every
+ * repaint. A string seen before is served from a LRU cache. An unseen
+ * string is laid out once as a whole, so that kerning and ligatures are
+ * taken into account, and its width is cached.
+ *
+ * @author Haifeng Li
+ */
+class TextMetrics<F> {
+
+    /**
+     * The metrics of JavaFX text layout.
+     */
+    static final TextMetrics<Font> FX = new TextMetrics<>((s, font) -> {
+        Text text = new Text(s);
+        text.setFont(font);
+        return text.getLayoutBounds().getWidth();
+    }, 8192);
+
+    /**
+     * The function to measure a string in given font.
+     */
+    private final ToDoubleBiFunction<String, F> measure;
+    /**
+     * The LRU cache of string widths.
+     */
+    private final Map<Key<F>, Double> widths;
+
+    /**
+     * The key of string width cache.
+     */
+    private static class Key<F> {
+        final F font;
+        final String text;
+        final int hash;
+
+        Key(F font, String text) {
+            this.font = font;
+            this.text = text;
+            this.hash = 31 * font.hashCode() + text.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key<?> key = (Key<?>) o;
+            return text.equals(key.text) && font.equals(key.font);
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param measure the function to measure a string in given font.
+     * @param capacity the maximum number of string widths cached.
+     */
+    TextMetrics(ToDoubleBiFunction<String, F> measure, int capacity) {
+        this.measure = measure;
+        this.widths = new LinkedHashMap<Key<F>, Double>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key<F>, Double> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the width of a string rendered in the given font.
+     */
+    double width(String s, F font) {
+        Key<F> key = new Key<>(font, s);
+        synchronized (widths) {
+            Double w = widths.get(key);
+            if (w != null) {
+                return w;
+            }
+        }
+
+        // Measured outside of the lock. A racing thread measures the
+        // same value.
+        double w = measure.applyAsDouble(s, font);
+        synchronized (widths) {
+            widths.put(key, w);
+        }
+        return w;
+    }
+}
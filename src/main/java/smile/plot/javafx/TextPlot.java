@@ -17,7 +17,8 @@
 
 package smile.plot.javafx;
 
-import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
 
 /**
  * The scatter plot of texts.
@@ -40,41 +41,47 @@ public class TextPlot extends Plot {
 
     @Override
     public void paint(Graphics g) {
-        for (Label text : texts) {
-            text.paint(g);
+        if (g.projection.canvas.isLabelCulling()) {
+            // Place the labels of higher priority first. The sort is stable
+            // so that labels of same priority keep their order.
+            int[] order = IntStream.range(0, texts.length).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -texts[i].priority))
+                    .mapToInt(Integer::intValue).toArray();
+            for (int i : order) {
+                texts[i].paint(g);
+            }
+        } else {
+            for (Label text : texts) {
+                text.paint(g);
+            }
         }
     }
 
     @Override
-    public double[] getLowerBound() {
-        double[] bound = new double[texts[0].coordinates.length];
-        Arrays.fill(bound, Double.POSITIVE_INFINITY);
+    protected double[][] computeBounds() {
+        double[][] b = Bounds.empty(texts[0].coordinates.length);
         for (Label text : texts) {
-            double[] x = text.coordinates;
-            for (int i = 0; i < x.length; i++) {
-                if (bound[i] > x[i]) {
-                    bound[i] = x[i];
-                }
-            }
+            Bounds.extend(b, text.coordinates);
         }
-
-        return bound;
+        return b;
     }
 
-    @Override
-    public double[] getUpperBound() {
-        double[] bound = new double[texts[0].coordinates.length];
-        Arrays.fill(bound, Double.NEGATIVE_INFINITY);
-        for (Label text : texts) {
-            double[] x = text.coordinates;
-            for (int i = 0; i < x.length; i++) {
-                if (bound[i] < x[i]) {
-                    bound[i] = x[i];
-                }
-            }
+    /**
+     * Create a text plot.
+     * @param texts the texts.
+     * @param coordinates a n-by-2 or n-by-3 matrix that are the coordinates of texts.
+     * @param priority the priority of texts when colliding labels are culled.
+     */
+    public static TextPlot of(String[] texts, double[][] coordinates, double[] priority) {
+        if (texts.length != priority.length) {
+            throw new IllegalArgumentException("The number of texts and that of priorities are not the same.");
         }
 
-        return bound;
+        TextPlot plot = of(texts, coordinates);
+        for (int i = 0; i < texts.length; i++) {
+            plot.texts[i].setPriority(priority[i]);
+        }
+        return plot;
     }
 
     /**
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.DoubleConsumer;
+import javafx.scene.paint.Color;
+import smile.math.MathEx;
+
+/**
+ * A heat map of a matrix stored on disk as a tiled pyramid, e.g. a
+ * distance matrix too large for memory. The cell of row i and column j
+ * covers [j, j+1] x [nrow-i-1, nrow-i] as in {@link Heatmap}. On paint,
+ * the finest level of pyramid whose cells are at least a pixel is chosen
+ * and only the visible part of it is resampled to the screen, so that
+ * zoom and pan cost depends on the viewport size, not the matrix size.
+ * The image is cached until the bounds or size of canvas change.
+ *
+ * @author Haifeng Li
+ */
+public class TiledHeatmap extends Plot {
+
+    /**
+     * The maximum number of cells of the level scanned for color range.
+     */
+    private static final int RANGE_CELLS = 1 << 20;
+
+    /**
+     * The pyramid of data matrix.
+     */
+    private final HeatmapPyramid pyramid;
+    /**
+     * The minimum of the data.
+     */
+    private double min;
+    /**
+     * The maximum of the data.
+     */
+    private double max;
+    /**
+     * The window width of values for each color.
+     */
+    private double width;
+    /**
+     * The color palette to represent values.
+     */
+    private Color[] palette;
+    /**
+     * The ARGB value of each color in the palette.
+     */
+    private int[] argb;
+    /**
+     * The visible cells resampled to the screen.
+     */
+    private SpriteSheet image;
+    /**
+     * The screen location of image.
+     */
+    private int imageX, imageY;
+    /**
+     * The projection state that the image was resampled with.
+     */
+    private double[] imageState;
+
+    /**
+     * Constructor. The color range is the 1% and 99% quantiles of the
+     * finest level of at most 1M cells.
+     * @param pyramid the pyramid of data matrix.
+     * @param palette the color palette.
+     */
+    public TiledHeatmap(HeatmapPyramid pyramid, Color[] palette) {
+        this.pyramid = pyramid;
+        this.palette = palette;
+        this.argb = Palette.argb(palette);
+
+        int level = 0;
+        while (level + 1 < pyramid.levels() && (long) pyramid.nrow(level) * pyramid.ncol(level) > RANGE_CELLS) {
+            level++;
+        }
+
+        int k = level;
+        ColorRange range = ColorRange.of(new ColorRange.Source() {
+            @Override
+            public int size() {
+                return pyramid.tileRows(k);
+            }
+
+            @Override
+            public void scan(int from, int to, DoubleConsumer consumer) {
+                int area = pyramid.tileSize() * pyramid.tileSize();
+                for (int tr = from; tr < to; tr++) {
+                    for (int tc = 0; tc < pyramid.tileColumns(k); tc++) {
+                        FloatBuffer tile = pyramid.tile(k, tr, tc);
+                        for (int i = 0; i < area; i++) {
+                            consumer.accept(tile.get(i));
+                        }
+                    }
+                }
+            }
+        }, ColorRange.LOWER, ColorRange.UPPER, ColorRange.Method.EXACT);
+
+        if (range.size() > 0) {
+            min = range.getLower();
+            max = range.getUpper();
+            width = (max - min) / palette.length;
+        }
+    }
+
+    /**
+     * Sets the color palette.
+     */
+    public TiledHeatmap setPalette(Color[] palette) {
+        synchronized (this) {
+            this.palette = palette;
+            argb = Palette.argb(palette);
+            width = (max - min) / palette.length;
+            image = null;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the range of colors.
+     */
+    public TiledHeatmap setColorRange(ColorRange range) {
+        synchronized (this) {
+            min = range.getLower();
+            max = range.getUpper();
+            width = (max - min) / palette.length;
+            image = null;
+        }
+        return this;
+    }
+
+    @Override
+    public Optional<String> tooltip(double[] coord) {
+        int j = (int) Math.floor(coord[0]);
+        int i = (int) Math.floor(pyramid.nrow() - coord[1]);
+        if (i < 0 || i >= pyramid.nrow() || j < 0 || j >= pyramid.ncol()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(String.format("[%d, %d] = %.4g", i, j, pyramid.get(0, i, j)));
+    }
+
+    @Override
+    protected double[][] computeBounds() {
+        return new double[][]{{0, 0}, {pyramid.ncol(), pyramid.nrow()}};
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        synchronized (this) {
+            double[] state = g.projection.state();
+            if (image == null || !Arrays.equals(state, imageState)) {
+                resample(g);
+                imageState = state;
+            }
+
+            if (image != null) {
+                g.g2d.drawSprite(image, 0, 0, image.getWidth(), image.getHeight(), imageX, imageY);
+            }
+        }
+
+        g.clearClip();
+
+        double[] start = new double[2];
+        double[] end = new double[2];
+
+        double height = 0.7 / palette.length;
+        start[0] = 1.1;
+        start[1] = 0.15;
+        end[0] = 1.13;
+        end[1] = start[1] - height;
+
+        for (int i = 0; i < palette.length; i++) {
+            g.setColor(palette[i]);
+            g.fillRectBaseRatio(start, end);
+            start[1] += height;
+            end[1] += height;
+        }
+
+        g.setColor(Color.BLACK);
+        start[1] -= height;
+        end[1] = 0.15 - height;
+        g.drawRectBaseRatio(start, end);
+        start[0] = 1.14;
+        double log = Math.log10(Math.abs(max));
+        int decimal = 1;
+        if (log < 0) {
+            decimal = (int) -log + 1;
+        }
+        g.drawTextBaseRatio(String.valueOf(MathEx.round(max, decimal)), start,0.0, 1.0);
+
+        start[1] = 0.15 - height;
+        log = Math.log10(Math.abs(min));
+        decimal = 1;
+        if (log < 0) {
+            decimal = (int) -log + 1;
+        }
+        g.drawTextBaseRatio(String.valueOf(MathEx.round(min, decimal)), start,0.0, 0.0);
+    }
+
+    /**
+     * Resamples the visible cells of the level matching the screen
+     * resolution.
+     */
+    private void resample(Graphics g) {
+        image = null;
+        int nrow = pyramid.nrow();
+        int ncol = pyramid.ncol();
+        double[] lower = g.getLowerBound();
+        double[] upper = g.getUpperBound();
+        double[] x = {Math.max(0, lower[0]), Math.min(ncol, upper[0])};
+        double[] y = {Math.max(0, lower[1]), Math.min(nrow, upper[1])};
+        if (x[1] <= x[0] || y[1] <= y[0]) {
+            return;
+        }
+
+        // In 2D, the screen x only depends on the logical x, and the
+        // screen y on the logical y.
+        double[] sx = new double[2];
+        double[] sy = new double[2];
+        g.projection.project(x, y, sx, sy, 2);
+
+        Projection projection = g.projection;
+        int x0 = Math.max(0, (int) Math.floor(Math.min(sx[0], sx[1])));
+        int x1 = Math.min(projection.width, (int) Math.ceil(Math.max(sx[0], sx[1])));
+        int y0 = Math.max(0, (int) Math.floor(Math.min(sy[0], sy[1])));
+        int y1 = Math.min(projection.height, (int) Math.ceil(Math.max(sy[0], sy[1])));
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+
+        // The cells per pixel along each axis. The finest level whose
+        // cells span at least a pixel along both axes is sampled, so that
+        // every cell of level falls under a pixel and no peak is skipped.
+        double ax = (x[1] - x[0]) / (sx[1] - sx[0]);
+        double ay = (y[1] - y[0]) / (sy[1] - sy[0]);
+        double cells = Math.max(Math.abs(ax), Math.abs(ay));
+        int level = 0;
+        while (level + 1 < pyramid.levels() && (1L << level) < cells) {
+            level++;
+        }
+
+        int w = x1 - x0;
+        int h = y1 - y0;
+        int[] columnOf = new int[w];
+        for (int px = 0; px < w; px++) {
+            double cx = x[0] + (x0 + px + 0.5 - sx[0]) * ax;
+            columnOf[px] = cx >= 0 && cx < ncol ? (int) cx >> level : -1;
+        }
+
+        int[] rowOf = new int[h];
+        for (int py = 0; py < h; py++) {
+            double cy = nrow - (y[0] + (y0 + py + 0.5 - sy[0]) * ay);
+            rowOf[py] = cy >= 0 && cy < nrow ? (int) cy >> level : -1;
+        }
+
+        int size = pyramid.tileSize();
+        FloatBuffer[] tiles = new FloatBuffer[pyramid.tileColumns(level)];
+        int tileRow = -1;
+
+        BufferedImage buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+        for (int py = 0; py < h; py++) {
+            int row = rowOf[py];
+            if (row < 0) continue;
+
+            if (row / size != tileRow) {
+                tileRow = row / size;
+                Arrays.fill(tiles, null);
+            }
+
+            int offset = (row % size) * size;
+            for (int px = 0, k = py * w; px < w; px++, k++) {
+                int col = columnOf[px];
+                if (col >= 0) {
+                    int tc = col / size;
+                    FloatBuffer tile = tiles[tc];
+                    if (tile == null) {
+                        tile = pyramid.tile(level, tileRow, tc);
+                        tiles[tc] = tile;
+                    }
+                    pixels[k] = color(tile.get(offset + col % size));
+                }
+            }
+        }
+
+        image = new SpriteSheet(buffer);
+        imageX = x0;
+        imageY = y0;
+    }
+
+    /**
+     * Returns the color of cell value.
+     */
+    private int color(float z) {
+        if (Float.isNaN(z)) {
+            return 0xFFFFFFFF;
+        }
+
+        int k = (int) ((z - min) / width);
+        if (k < 0) {
+            k = 0;
+        }
+
+        if (k >= argb.length) {
+            k = argb.length - 1;
+        }
+
+        return argb[k];
+    }
+
+    @Override
+    public SmileFxCanvas canvas() {
+        SmileFxCanvas canvas = new SmileFxCanvas(getLowerBound(), getUpperBound(), false);
+        canvas.add(this);
+        canvas.getAxis(0).setGridVisible(false);
+        canvas.getAxis(1).setGridVisible(false);
+        return canvas;
+    }
+
+    /**
+     * Creates a tiled heatmap with 16-color jet color palette.
+     * @param pyramid the pyramid of data matrix.
+     */
+    public static TiledHeatmap of(HeatmapPyramid pyramid) {
+        return of(pyramid, Palette.jet(16, 1.0f));
+    }
+
+    /**
+     * Creates a tiled heatmap.
+     * @param pyramid the pyramid of data matrix.
+     * @param palette the color palette.
+     */
+    public static TiledHeatmap of(HeatmapPyramid pyramid, Color[] palette) {
+        return new TiledHeatmap(pyramid, palette);
+    }
+}
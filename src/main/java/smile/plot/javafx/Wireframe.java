@@ -18,7 +18,6 @@
 package smile.plot.javafx;
 
 import javafx.scene.paint.Color;
-import smile.math.MathEx;
 
 /**
  * A wire frame model specifies each edge of the physical object where two
@@ -51,22 +50,25 @@ public class Wireframe extends Plot {
     }
 
     @Override
-    public double[] getLowerBound() {
-        return MathEx.colMin(vertices);
-    }
-
-    @Override
-    public double[] getUpperBound() {
-        return MathEx.colMax(vertices);
+    protected double[][] computeBounds() {
+        return Bounds.of(vertices);
     }
 
     @Override
     public void paint(Graphics g) {
         g.setColor(color);
+        double[] sx = g.scratch(0, vertices.length);
+        double[] sy = g.scratch(1, vertices.length);
+        g.getProjection().project(vertices, 0, vertices.length, sx, sy);
 
+        GraphicsContextInterface g2d = g.getGraphics();
+        g2d.beginPath();
         for (int[] edge : edges) {
-            g.drawLine(vertices[edge[0]], vertices[edge[1]]);
+            g2d.moveTo(sx[edge[0]], sy[edge[0]]);
+            g2d.lineTo(sx[edge[1]], sy[edge[1]]);
         }
+        g2d.stroke();
+        g2d.beginPath();
     }
 
     /**
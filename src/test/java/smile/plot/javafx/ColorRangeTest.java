@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the quantiles of color range against sorting.
+ *
+ * @author Haifeng Li
+ */
+public class ColorRangeTest {
+
+    /**
+     * Returns a random matrix of integers, i.e. with many ties.
+     */
+    private static double[][] matrix(int m, int n, int bound, long seed) {
+        Random random = new Random(seed);
+        double[][] z = new double[m][n];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                z[i][j] = random.nextInt(bound);
+            }
+        }
+        return z;
+    }
+
+    /**
+     * Checks the exact quantiles against the sorted values.
+     */
+    private static void check(double[][] z, double lower, double upper) {
+        double[] values = Arrays.stream(z)
+                .flatMapToDouble(Arrays::stream)
+                .filter(v -> !Double.isNaN(v))
+                .sorted()
+                .toArray();
+
+        int n = values.length;
+        ColorRange range = ColorRange.of(z, lower, upper, ColorRange.Method.EXACT);
+        assertEquals(n, range.size());
+        if (n == 0) {
+            assertTrue(Double.isNaN(range.getLower()));
+            assertTrue(Double.isNaN(range.getUpper()));
+            return;
+        }
+
+        double lo = values[(int) Math.min(n - 1, Math.round(lower * n))];
+        double hi = values[(int) Math.round(upper * (n - 1))];
+        assertEquals(lo, range.getLower(), 0.0);
+        assertEquals(hi, range.getUpper(), 0.0);
+
+        ColorRange approx = ColorRange.of(z, lower, upper, ColorRange.Method.APPROXIMATE);
+        if (Double.isInfinite(lo)) {
+            assertEquals(lo, approx.getLower(), 0.0);
+        } else {
+            assertTrue(approx.getLower() >= values[0] && approx.getLower() <= values[n - 1]);
+        }
+
+        if (Double.isInfinite(hi)) {
+            assertEquals(hi, approx.getUpper(), 0.0);
+        } else {
+            assertTrue(approx.getUpper() >= values[0] && approx.getUpper() <= values[n - 1]);
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        System.out.println("random");
+        Random random = new Random(3);
+        double[][] z = new double[100][100];
+        for (double[] row : z) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = 100 + 30 * random.nextGaussian();
+            }
+        }
+
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(z, 0.0, 1.0);
+        check(z, 0.5, 0.5);
+    }
+
+    @Test
+    public void testTies() {
+        System.out.println("ties");
+        check(matrix(100, 100, 7, 1), ColorRange.LOWER, ColorRange.UPPER);
+        check(matrix(300, 400, 3, 2), ColorRange.LOWER, ColorRange.UPPER);
+        check(matrix(300, 400, 3, 2), 0.3, 0.7);
+    }
+
+    @Test
+    public void testTiesAtMinimum() {
+        System.out.println("ties at minimum");
+        // Sparse non-negative data, with more zeros than collected in a bin.
+        Random random = new Random(7);
+        double[][] z = new double[400][500];
+        for (double[] row : z) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = random.nextInt(10) == 0 ? random.nextDouble() * 1000 : 0.0;
+            }
+        }
+
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(z, 0.5, 0.95);
+
+        // Half zeros among many distinct tiny values.
+        for (double[] row : z) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = j % 2 == 0 ? 0.0 : random.nextDouble() * 1E-300;
+            }
+        }
+
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(z, 0.6, 0.9);
+    }
+
+    @Test
+    public void testAllEqual() {
+        System.out.println("all equal");
+        double[][] z = new double[300][300];
+        for (double[] row : z) {
+            Arrays.fill(row, 2.5);
+        }
+
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(new double[][]{{-1.0}}, ColorRange.LOWER, ColorRange.UPPER);
+    }
+
+    @Test
+    public void testInfinity() {
+        System.out.println("infinity");
+        for (double inf : new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY}) {
+            double[][] z = matrix(100, 100, 200, 4);
+            z[17][42] = inf;
+            check(z, ColorRange.LOWER, ColorRange.UPPER);
+            check(z, 0.0, 1.0);
+        }
+
+        double[][] z = matrix(100, 100, 200, 5);
+        for (int i = 0; i < 100; i++) {
+            z[i][i] = i % 2 == 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(z, 0.005, 0.995);
+
+        check(new double[][]{{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}}, 0.0, 1.0);
+        check(new double[][]{{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY}}, ColorRange.LOWER, ColorRange.UPPER);
+    }
+
+    @Test
+    public void testNaN() {
+        System.out.println("NaN");
+        double[][] z = matrix(100, 100, 50, 6);
+        for (int i = 0; i < 100; i++) {
+            z[i][99 - i] = Double.NaN;
+        }
+        check(z, ColorRange.LOWER, ColorRange.UPPER);
+        check(new double[][]{{Double.NaN}}, ColorRange.LOWER, ColorRange.UPPER);
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the contour lines extracted in parallel with the interval index
+ * against a serial scan of every cell.
+ *
+ * @author Haifeng Li
+ */
+public class ContourTest {
+
+    /**
+     * Returns the key of a segment regardless of its direction.
+     */
+    private static String key(double x0, double y0, double x1, double y1) {
+        if (x0 > x1 || (x0 == x1 && y0 > y1)) {
+            return x1 + "," + y1 + "," + x0 + "," + y0;
+        }
+        return x0 + "," + y0 + "," + x1 + "," + y1;
+    }
+
+    /**
+     * Returns the ratio of (zc - z0) / (z1 - z0) if zc is between z0 and
+     * z1, or NaN otherwise.
+     */
+    private static double ratio(double z0, double z1, double zc) {
+        return (z0 - zc) * (z1 - zc) < 0.0 ? (zc - z0) / (z1 - z0) : Double.NaN;
+    }
+
+    /**
+     * Counts the segments of a level by marching squares over every cell
+     * of a grid with finite values.
+     */
+    private static Map<String, Integer> segments(double[] x, double[] y, double[][] z, double zc, double atom) {
+        Map<String, Integer> segments = new HashMap<>();
+        double[] xx = new double[4];
+        double[] yy = new double[4];
+        for (int j = 0; j + 1 < y.length; j++) {
+            for (int i = 0; i + 1 < x.length; i++) {
+                double xl = x[i], xh = x[i + 1];
+                double yl = y[j], yh = y[j + 1];
+                double zll = z[j][i] == zc ? zc + atom : z[j][i];
+                double zhl = z[j][i + 1] == zc ? zc + atom : z[j][i + 1];
+                double zlh = z[j + 1][i] == zc ? zc + atom : z[j + 1][i];
+                double zhh = z[j + 1][i + 1] == zc ? zc + atom : z[j + 1][i + 1];
+
+                int k = 0;
+                double f = ratio(zll, zhl, zc);
+                if (!Double.isNaN(f)) {
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k++] = yl;
+                }
+                f = ratio(zll, zlh, zc);
+                if (!Double.isNaN(f)) {
+                    xx[k] = xl;
+                    yy[k++] = yl + f * (yh - yl);
+                }
+                f = ratio(zhl, zhh, zc);
+                if (!Double.isNaN(f)) {
+                    xx[k] = xh;
+                    yy[k++] = yl + f * (yh - yl);
+                }
+                f = ratio(zlh, zhh, zc);
+                if (!Double.isNaN(f)) {
+                    xx[k] = xl + f * (xh - xl);
+                    yy[k++] = yh;
+                }
+
+                if (k == 4) {
+                    // Joins the crossings in the order of x as a saddle.
+                    for (k = 3; k >= 1; k--) {
+                        int m = k;
+                        for (int l = 0; l < k; l++) {
+                            if (xx[l] > xx[m]) m = l;
+                        }
+                        double t = xx[k]; xx[k] = xx[m]; xx[m] = t;
+                        t = yy[k]; yy[k] = yy[m]; yy[m] = t;
+                    }
+                    segments.merge(key(xx[0], yy[0], xx[1], yy[1]), 1, Integer::sum);
+                    segments.merge(key(xx[2], yy[2], xx[3], yy[3]), 1, Integer::sum);
+                } else if (k == 2) {
+                    segments.merge(key(xx[0], yy[0], xx[1], yy[1]), 1, Integer::sum);
+                } else {
+                    assertEquals(0, k);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Checks that the contour lines of each level chain exactly the
+     * segments found by the serial scan, and that levels are in order.
+     */
+    private static void check(double[] x, double[] y, double[][] z, double[] levels) {
+        Contour contour = new Contour(x, y, z, levels);
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double[] row : z) {
+            for (double v : row) {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        double atom = 1E-7 * (max - min);
+
+        List<Isoline> isolines = contour.isolines();
+        assertFalse(isolines.isEmpty());
+        int k = 0;
+        for (double zc : levels) {
+            Map<String, Integer> expected = segments(x, y, z, zc, atom);
+            Map<String, Integer> actual = new HashMap<>();
+            for (; k < isolines.size() && isolines.get(k).level == zc; k++) {
+                List<double[]> points = isolines.get(k).points();
+                for (int i = 1; i < points.size(); i++) {
+                    double[] p = points.get(i - 1);
+                    double[] q = points.get(i);
+                    actual.merge(key(p[0], p[1], q[0], q[1]), 1, Integer::sum);
+                }
+            }
+            assertEquals("level " + zc, expected, actual);
+        }
+        assertEquals(isolines.size(), k);
+    }
+
+    /**
+     * Returns a grid of waves quantized to eighths, so that many grid
+     * values are equal to a level.
+     */
+    private static double[][] waves(double[] x, double[] y) {
+        double[][] z = new double[y.length][x.length];
+        for (int j = 0; j < y.length; j++) {
+            for (int i = 0; i < x.length; i++) {
+                double v = Math.sin(x[i] / 7) * Math.cos(y[j] / 5) + 0.3 * Math.sin((x[i] + y[j]) / 11);
+                z[j][i] = Math.round(8 * v) / 8.0;
+            }
+        }
+        return z;
+    }
+
+    private static double[] grid(int n, double step) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i * step + 0.05 * Math.sin(i);
+        }
+        return x;
+    }
+
+    @Test
+    public void testSerial() {
+        System.out.println("serial");
+        double[] x = grid(40, 0.5);
+        double[] y = grid(30, 0.7);
+        check(x, y, waves(x, y), new double[]{-0.5, 0.0, 0.3, 0.5});
+    }
+
+    @Test
+    public void testParallel() {
+        System.out.println("parallel");
+        double[] x = grid(200, 0.5);
+        double[] y = grid(160, 0.6);
+        double[] levels = new double[17];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = -1.0 + 0.125 * i;
+        }
+        check(x, y, waves(x, y), levels);
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Random;
+import smile.math.MathEx;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the cell lookup of hexmap against a polygon scan of all cells.
+ *
+ * @author Haifeng Li
+ */
+public class HexmapTest {
+
+    /**
+     * Returns the hexagon of cell (i, j) in a hexmap of nrow rows.
+     */
+    private static double[][] hexagon(int nrow, int i, int j) {
+        double s = Math.sqrt(0.75);
+        double[][] hexagon = new double[6][2];
+        for (int r = 0; r < 6; r++) {
+            double a = Math.PI / 3.0 * r;
+            hexagon[r][0] = j + Math.sin(a) / 2;
+            if (i % 2 == 1) hexagon[r][0] += 0.5;
+            hexagon[r][1] = (nrow - i) * s + Math.cos(a) / 2;
+        }
+        return hexagon;
+    }
+
+    /**
+     * Checks the located cells of random points against the hexagons
+     * containing them.
+     */
+    private static void check(int nrow, int ncol, long seed) {
+        Hexmap hexmap = Hexmap.of(new double[nrow][ncol]);
+        double[][][][] hexagons = new double[nrow][ncol][][];
+        for (int i = 0; i < nrow; i++) {
+            for (int j = 0; j < ncol; j++) {
+                hexagons[i][j] = hexagon(nrow, i, j);
+            }
+        }
+
+        Random random = new Random(seed);
+        int hits = 0;
+        for (int k = 0; k < 20000; k++) {
+            double x = -1.0 + (ncol + 2.0) * random.nextDouble();
+            double y = -1.0 + (nrow + 2.0) * random.nextDouble();
+
+            int[] cell = hexmap.locate(x, y);
+            String point = String.format("(%f, %f)", x, y);
+            boolean found = false;
+            for (int i = 0; i < nrow; i++) {
+                for (int j = 0; j < ncol; j++) {
+                    if (MathEx.contains(hexagons[i][j], x, y)) {
+                        assertNotNull(point, cell);
+                        assertEquals(point, i, cell[0]);
+                        assertEquals(point, j, cell[1]);
+                        found = true;
+                    }
+                }
+            }
+
+            if (found) {
+                hits++;
+            } else {
+                assertNull(point, cell);
+            }
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testLocate() {
+        System.out.println("locate");
+        check(1, 1, 1);
+        check(7, 9, 2);
+        check(8, 5, 3);
+        check(20, 30, 4);
+    }
+
+    @Test
+    public void testCenter() {
+        System.out.println("center");
+        int nrow = 6, ncol = 4;
+        Hexmap hexmap = Hexmap.of(new double[nrow][ncol]);
+        for (int i = 0; i < nrow; i++) {
+            for (int j = 0; j < ncol; j++) {
+                double x = j + (i % 2 == 1 ? 0.5 : 0.0);
+                double y = (nrow - i) * Math.sqrt(0.75);
+                assertArrayEquals(new int[]{i, j}, hexmap.locate(x, y));
+            }
+        }
+    }
+}
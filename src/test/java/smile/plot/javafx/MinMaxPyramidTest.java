@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package smile.plot.javafx;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the envelope of min/max pyramid against a linear scan.
+ *
+ * @author Haifeng Li
+ */
+public class MinMaxPyramidTest {
+
+    /**
+     * Returns a random walk with ascending x, including runs of equal x.
+     */
+    private static double[][] walk(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[n][2];
+        double x = 0.0, y = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(8) != 0) {
+                x += random.nextDouble();
+            }
+            y += random.nextGaussian();
+            points[i][0] = x;
+            points[i][1] = y;
+        }
+        return points;
+    }
+
+    /**
+     * Computes the envelope by scanning every point of each bucket.
+     */
+    private static double[][] envelope(double[][] points, double xmin, double xmax, int buckets) {
+        int n = points.length;
+        double width = (xmax - xmin) / buckets;
+        double[] x = new double[4 * (buckets + 2)];
+        double[] y = new double[4 * (buckets + 2)];
+        int m = 0;
+        int begin = 0;
+        for (int c = 0; c <= buckets + 1; c++) {
+            int end = begin;
+            while (end < n && (c > buckets || points[end][0] < xmin + c * width)) {
+                end++;
+            }
+
+            if (end > begin) {
+                int min = begin, max = begin;
+                for (int i = begin; i < end; i++) {
+                    if (points[i][1] < points[min][1]) min = i;
+                    if (points[i][1] > points[max][1]) max = i;
+                }
+
+                int[] order = {begin, Math.min(min, max), Math.max(min, max), end - 1};
+                for (int i : order) {
+                    if (m == 0 || x[m - 1] != points[i][0] || y[m - 1] != points[i][1]) {
+                        x[m] = points[i][0];
+                        y[m] = points[i][1];
+                        m++;
+                    }
+                }
+            }
+            begin = end;
+        }
+
+        return new double[][]{Arrays.copyOf(x, m), Arrays.copyOf(y, m)};
+    }
+
+    /**
+     * Checks the envelope of both backings against the linear scan.
+     */
+    private static void check(double[][] points, double xmin, double xmax, int buckets) {
+        double[] px = new double[points.length];
+        double[] py = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            px[i] = points[i][0];
+            py[i] = points[i][1];
+        }
+
+        double[][] expected = envelope(points, xmin, xmax, buckets);
+        MinMaxPyramid[] pyramids = {
+                new MinMaxPyramid(points),
+                new MinMaxPyramid(DoubleColumns.of(px, py))
+        };
+
+        for (MinMaxPyramid pyramid : pyramids) {
+            double[] x = new double[4 * (buckets + 2)];
+            double[] y = new double[4 * (buckets + 2)];
+            int m = pyramid.envelope(xmin, xmax, buckets, x, y);
+            String range = String.format("[%f, %f] / %d", xmin, xmax, buckets);
+            assertArrayEquals(range, expected[0], Arrays.copyOf(x, m), 0.0);
+            assertArrayEquals(range, expected[1], Arrays.copyOf(y, m), 0.0);
+        }
+    }
+
+    @Test
+    public void testEnvelope() {
+        System.out.println("envelope");
+        for (int n : new int[]{1, 63, 64, 65, 1000, 100000}) {
+            double[][] points = walk(n, n);
+            double first = points[0][0];
+            double last = points[n - 1][0];
+            double span = Math.max(1.0, last - first);
+
+            check(points, first, last, 1);
+            check(points, first, last, 800);
+            check(points, first - span, last + span, 300);
+            check(points, first + 0.3 * span, first + 0.4 * span, 500);
+            check(points, last + 1.0, last + 2.0, 10);
+        }
+    }
+
+    @Test
+    public void testRandomRanges() {
+        System.out.println("random ranges");
+        double[][] points = walk(50000, 7);
+        double first = points[0][0];
+        double span = points[points.length - 1][0] - first;
+
+        Random random = new Random(11);
+        for (int k = 0; k < 200; k++) {
+            double a = first + span * random.nextDouble();
+            double b = first + span * random.nextDouble();
+            check(points, Math.min(a, b), Math.max(a, b) + 1E-3, 1 + random.nextInt(2000));
+        }
+    }
+}